@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Throughput benchmarks of the hot paths of the Genetic Algorithm: Genotype.calculateFitness (one Chromosome and a batch), each Chromosome crossover method, Chromosome.mutate, each Selector strategy, whole generations of algorithm1 and of a GenerationArena, steps of a SteadyStateEngine, and saving and restoring a Checkpoint.
+ * Each benchmark is run for a number of warmup iterations, whose results are discarded so that the JIT compiler has optimized the code, and then for a number of measurement iterations of a fixed length. The result of every operation is added to a sink so that the JIT compiler cannot remove the work as unused.
+ * Every benchmark runs once for each combination of the gene counts and population sizes, and the results are written as JSON in the layout of JMH's JSON results, so they can be compared between commits to catch throughput regressions.
+ * Usage: java BenchmarkSuite [--genes=64,1024,16384] [--population=100,1000] [--warmup=3] [--iterations=5] [--time=500] [--only=Selector] [--out=benchmarks.json]
+ *
+ * @author willj
+ */
+public class BenchmarkSuite {
+  // The parameters of the run, see the usage above
+  int[] geneCounts = { 64, 1024, 16384 };
+  int[] populationSizes = { 100, 1000 };
+  int warmupIterations = 3;
+  int measurementIterations = 5;
+  long iterationMillis = 500;
+  String only = "";
+  String out = "benchmarks.json";
+
+  // Receives the result of every operation so that the work cannot be optimized away
+  long sink;
+
+  // The JSON object of each finished benchmark
+  List<String> results = new ArrayList<String>();
+
+  public static void main(String[] args) throws IOException {
+    BenchmarkSuite suite = new BenchmarkSuite();
+    suite.parseArguments(args);
+    suite.runAll();
+    suite.writeResults();
+  }
+
+  /**
+   * Reads the --name=value arguments
+   * @param args
+   *   (String[]) the command line arguments
+   */
+  void parseArguments(String[] args) {
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals<0)
+        throw new IllegalArgumentException("Arguments must look like --name=value: " + arg);
+
+      String name = arg.substring(2, equals);
+      String value = arg.substring(equals + 1);
+      switch (name) {
+        case "genes":
+          geneCounts = parseList(value);
+          break;
+        case "population":
+          populationSizes = parseList(value);
+          break;
+        case "warmup":
+          warmupIterations = Integer.parseInt(value);
+          break;
+        case "iterations":
+          measurementIterations = Integer.parseInt(value);
+          break;
+        case "time":
+          iterationMillis = Long.parseLong(value);
+          break;
+        case "only":
+          only = value;
+          break;
+        case "out":
+          out = value;
+          break;
+        default:
+          throw new IllegalArgumentException("Valid arguments are: --genes, --population, --warmup, --iterations, --time, --only, --out");
+      }
+    }
+  }
+
+  // Parses a comma separated list of ints
+  static int[] parseList(String value) {
+    String[] parts = value.split(",");
+    int[] list = new int[parts.length];
+    for (int i=0; i<parts.length; i++)
+      list[i] = Integer.parseInt(parts[i].trim());
+    return list;
+  }
+
+  /**
+   * Runs every benchmark for every combination of parameters
+   */
+  void runAll() {
+    for (int genes : geneCounts) {
+      Genotype genotype = makeGenotype(genes);
+      RandomStream random = new RandomStream(genes);
+
+      Chromosome parent1 = randomChromosome(genes, random);
+      Chromosome parent2 = randomChromosome(genes, random);
+      Chromosome child = new Chromosome(genes);
+      String geneParameter = "\"genes\": \"" + genes + "\"";
+
+      run("Genotype.calculateFitness", geneParameter, () -> genotype.calculateFitness(parent1));
+      Genotype sparseGenotype = new Genotype(genotype);
+      sparseGenotype.setFitnessKernel(Genotype.KERNEL_SPARSE);
+      run("Genotype.calculateFitnessSparse", geneParameter, () -> sparseGenotype.calculateFitness(parent1));
+      Genotype slicedGenotype = new Genotype(genotype);
+      slicedGenotype.setFitnessKernel(Genotype.KERNEL_SLICED);
+      run("Genotype.calculateFitnessSliced", geneParameter, () -> slicedGenotype.calculateFitness(parent1));
+      Genotype cachedGenotype = new Genotype(genotype);
+      cachedGenotype.setFitnessCache(new FitnessCache(1024));
+      run("Genotype.calculateFitnessCached", geneParameter, () -> cachedGenotype.calculateFitness(parent1));
+      run("Chromosome.singlePointCrossover", geneParameter, () -> { child.singlePointCrossover(parent1, parent2); return child.genes[0]; });
+      run("Chromosome.twoPointCrossover", geneParameter, () -> { child.twoPointCrossover(parent1, parent2); return child.genes[0]; });
+      run("Chromosome.threePointCrossover", geneParameter, () -> { child.threePointCrossover(parent1, parent2); return child.genes[0]; });
+      run("Chromosome.randomCrossover", geneParameter, () -> { child.randomCrossover(parent1, parent2, random); return child.genes[0]; });
+      Chromosome child2 = new Chromosome(genes);
+      CrossoverOperator kPointCrossover = CrossoverOperators.get("kPointCrossover");
+      CrossoverOperator uniformCrossover = CrossoverOperators.get("uniformCrossover");
+      run("CrossoverOperators.kPointCrossover", geneParameter, () -> { kPointCrossover.crossover(parent1, parent2, child, child2, random); return child.genes[0]; });
+      run("CrossoverOperators.uniformCrossover", geneParameter, () -> { uniformCrossover.crossover(parent1, parent2, child, child2, random); return child.genes[0]; });
+      run("Chromosome.mutate", geneParameter, () -> { child.mutate(0.001, random); return child.genes[0]; });
+      run("Chromosome.mutateDelta", geneParameter, () -> { child.mutate(0.001, genotype, random); return child.getFitnessScore(); });
+
+      for (int populationSize : populationSizes) {
+        String parameters = geneParameter + ", \"populationSize\": \"" + populationSize + "\"";
+
+        Population population = new Population(genotype);
+        population.setRandom(random);
+        population.generateRandom(populationSize);
+        Selector selector = new Selector();
+        selector.setRandom(random);
+        int count = populationSize / 2;
+
+        run("Genotype.calculateFitnessBatch", parameters, () -> { genotype.calculateFitness(population.population, 0, populationSize); return population.get(0).getFitnessScore(); });
+
+        run("Selector.rolluletteWheelSelection", parameters, () -> selector.rolluletteWheelSelection(population, count).size());
+        run("Selector.tournamentSelection", parameters, () -> selector.tournamentSelection(population, count).size());
+        run("Selector.rankSelection", parameters, () -> selector.rankSelection(population, count).size());
+
+        // One generation of algorithm1. Each operation continues from the generation of the previous one
+        GeneticAlgorithm geneticAlgorithm = new GeneticAlgorithm();
+        Population[] generation = { population };
+        int numberOfChildren = (int) (populationSize*0.6);
+        run("GeneticAlgorithm.nextGeneration", parameters, () -> {
+          generation[0] = geneticAlgorithm.nextGeneration(generation[0], selector, "singlePointCrossover", "randomCrossover", populationSize, numberOfChildren, 0.001, 3, 0);
+          return generation[0].getBestScore();
+        });
+
+        GenerationArena arena = new GenerationArena(genotype, new Selector(), "singlePointCrossover", "randomCrossover", populationSize, 0.6, 0.001, 3, random);
+        run("GenerationArena.step", parameters, () -> { arena.step(); return arena.getCurrent().getBestScore(); });
+
+        SteadyStateEngine engine = new SteadyStateEngine(genotype, "singlePointCrossover", populationSize, 0.6, 0.001, SteadyStateEngine.REPLACE_WORST, random);
+        run("SteadyStateEngine.step", parameters, () -> { engine.step(); return engine.getPopulation().getBestScore(); });
+
+        // A save includes forcing the file to disk, so it measures the real cost of a checkpoint
+        String checkpointPath = Paths.get(System.getProperty("java.io.tmpdir"), "BenchmarkSuite.checkpoint").toString();
+        PackedPopulation restored = new PackedPopulation(genotype, populationSize);
+        run("Checkpoint.save", parameters, () -> { Checkpoint.save(checkpointPath, engine.getPopulation(), 0, random); return populationSize; });
+        // Saved again so that the restore benchmark also runs on its own with --only
+        Checkpoint.save(checkpointPath, engine.getPopulation(), 0, random);
+        run("Checkpoint.restore", parameters, () -> { Checkpoint.load(checkpointPath).restore(restored); return restored.getBestScore(); });
+      }
+    }
+
+    // Printed so that the sink is used
+    System.out.println("Sink: " + sink);
+  }
+
+  /**
+   * Measures the throughput of one operation and records the result
+   * @param benchmark
+   *   (String) the name of the benchmark
+   * @param parameters
+   *   (String) the parameters of the benchmark as JSON members
+   * @param operation
+   *   (LongSupplier) the operation to measure. Its result is added to the sink
+   */
+  void run(String benchmark, String parameters, LongSupplier operation) {
+    if (!benchmark.contains(only))
+      return;
+
+    for (int i=0; i<warmupIterations; i++)
+      iteration(operation);
+
+    double[] scores = new double[measurementIterations];
+    for (int i=0; i<measurementIterations; i++)
+      scores[i] = iteration(operation);
+
+    double mean = 0;
+    for (double score : scores)
+      mean += score;
+    mean /= scores.length;
+
+    double variance = 0;
+    for (double score : scores)
+      variance += (score - mean)*(score - mean);
+    double error = scores.length>1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+
+    System.out.println(String.format(Locale.ROOT, "%-36s {%s}  %,.0f ops/s  (+- %,.0f)", benchmark, parameters.replace("\"", ""), mean, error));
+
+    StringBuilder rawData = new StringBuilder();
+    for (int i=0; i<scores.length; i++) {
+      if (i>0)
+        rawData.append(", ");
+      rawData.append(String.format(Locale.ROOT, "%.3f", scores[i]));
+    }
+
+    results.add(String.format(Locale.ROOT,
+        "  {\n    \"benchmark\": \"%s\",\n    \"mode\": \"thrpt\",\n    \"warmupIterations\": %d,\n    \"measurementIterations\": %d,\n    \"measurementTime\": \"%d ms\",\n    \"params\": { %s },\n    \"primaryMetric\": {\n      \"score\": %.3f,\n      \"scoreError\": %.3f,\n      \"scoreUnit\": \"ops/s\",\n      \"rawData\": [ [ %s ] ]\n    }\n  }",
+        benchmark, warmupIterations, measurementIterations, iterationMillis, parameters, mean, error, rawData));
+  }
+
+  /**
+   * Runs the operation for iterationMillis
+   * @param operation
+   *   (LongSupplier) the operation to measure
+   * @return
+   *   (double) the number of operations per second
+   */
+  double iteration(LongSupplier operation) {
+    long sum = 0;
+    long operations = 0;
+    long start = System.nanoTime();
+    long end = start + iterationMillis * 1000000;
+    long now;
+    // The clock is read every 16 operations so that reading it does not dominate cheap operations
+    do {
+      for (int i=0; i<16; i++)
+        sum += operation.getAsLong();
+      operations += 16;
+      now = System.nanoTime();
+    } while (now<end);
+
+    sink += sum;
+    return operations * 1e9 / (now - start);
+  }
+
+  /**
+   * Writes the results as a JSON array to the out file
+   */
+  void writeResults() throws IOException {
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8))) {
+      writer.println("[");
+      for (int i=0; i<results.size(); i++)
+        writer.println(results.get(i) + (i<results.size()-1 ? "," : ""));
+      writer.println("]");
+    }
+    System.out.println("Results written to " + out);
+  }
+
+  // Creates a Genotype with random Items. The seed is fixed so that every run benchmarks the same Items
+  static Genotype makeGenotype(int genes) {
+    RandomStream random = new RandomStream(42);
+    Genotype genotype = new Genotype(0);
+    for (int i=0; i<genes; i++)
+      genotype.add(i, 1 + random.nextInt(100), 1 + random.nextInt(50));
+    genotype.setIdealTotalCost(genes * 10);
+    return genotype;
+  }
+
+  // Creates a Chromosome with random genes
+  static Chromosome randomChromosome(int genes, RandomStream random) {
+    Chromosome chromosome = new Chromosome(genes);
+    chromosome.setRandomGenes(random);
+    return chromosome;
+  }
+}
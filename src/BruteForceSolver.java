@@ -0,0 +1,315 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the Chromosome with the highest possible fitnessScore of a Genotype by searching every subset of its Items. Used as ground truth to measure how close the Genetic Algorithm gets to the optimum.
+ * Subsets are visited in Gray code order, in which each subset differs from the previous one by a single Item, so the value and cost sums are updated with one addition each instead of being recalculated. The search space is split by the highest Item bits into tasks that run on a ForkJoinPool.
+ * Up to MAX_BRUTE_FORCE_ITEMS Items every subset is scored. Up to MAX_ITEMS Items the search meets in the middle: the subsets of the upper half of the Items are reduced to the upper convex hull of (cost, value score) points once, and each subset of the lower half is then combined with its best upper half by a binary search on the hull. This takes O(2^(n/2) * n) instead of O(2^n).
+ * A BruteForceSolver should only run one solve at a time.
+ *
+ * @author willj
+ */
+public class BruteForceSolver {
+  // The largest number of Items for which every subset is scored
+  public static final int MAX_BRUTE_FORCE_ITEMS = 24;
+
+  // The largest number of Items that can be solved. The meet in the middle tables hold 2^(n - n/2) entries
+  public static final int MAX_ITEMS = 44;
+
+  // The number of highest Item bits that are fixed per task. 2^PREFIX_BITS tasks are enough to keep every core busy
+  static final int PREFIX_BITS = 8;
+
+  // The Genotype to solve
+  Genotype genotype;
+
+  // The pool whose threads search the subsets
+  ForkJoinPool pool;
+
+  // The values and costs of the Items, copied out of the Items so that the search reads two primitive arrays
+  int numberOfItems;
+  int[] values;
+  int[] costs;
+
+  // The upper hull of the subsets of the upper half of the Items, by increasing cost. Only set while solveMeetInTheMiddle runs
+  int[] hullCosts;
+  double[] hullScores;
+  int[] hullSubsets;
+  int[] hullValues;
+
+  /**
+   * Constructor for when the pool is provided
+   * @param genotype
+   *   (Genotype) the Genotype to solve. Must have between 4 and MAX_ITEMS Items
+   * @param pool
+   *   (ForkJoinPool) the pool whose threads search the subsets
+   */
+  public BruteForceSolver(Genotype genotype, ForkJoinPool pool) {
+    if (genotype.genesCount()<4)
+      throw new IllegalArgumentException("There must be at least 4 Items in the Genotype.");
+    if (genotype.genesCount()>MAX_ITEMS)
+      throw new IllegalArgumentException("A BruteForceSolver can solve at most " + MAX_ITEMS + " Items.");
+
+    this.genotype = genotype;
+    this.pool = pool;
+    this.numberOfItems = genotype.genesCount();
+    this.values = new int[numberOfItems];
+    this.costs = new int[numberOfItems];
+    for (int i=0; i<numberOfItems; i++) {
+      values[i] = genotype.getValue(i);
+      costs[i] = genotype.getCost(i);
+    }
+  }
+
+  /**
+   * Constructor for when no pool is provided. Uses the common ForkJoinPool
+   * @param genotype
+   *   (Genotype) the Genotype to solve. Must have between 4 and MAX_ITEMS Items
+   */
+  public BruteForceSolver(Genotype genotype) {
+    this(genotype, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Finds a Chromosome with the highest fitnessScore, by brute force for up to MAX_BRUTE_FORCE_ITEMS Items and by meeting in the middle above that
+   * @return
+   *   (Chromosome) an optimal Chromosome, scored with Genotype.calculateFitness
+   */
+  public Chromosome solve() {
+    if (numberOfItems<=MAX_BRUTE_FORCE_ITEMS)
+      return solveBruteForce();
+    return solveMeetInTheMiddle();
+  }
+
+  /**
+   * Scores every subset of the Items. If several subsets have the best fitnessScore the one with the lowest bits is returned, no matter how many threads run
+   * @return
+   *   (Chromosome) an optimal Chromosome, scored with Genotype.calculateFitness
+   */
+  public Chromosome solveBruteForce() {
+    return toChromosome(search(numberOfItems));
+  }
+
+  /**
+   * Combines each subset of the lower half of the Items with the subset of the upper half that completes it best.
+   * The fitnessScore of a subset split into a lower part a and an upper part b is, before the cast to int, valueWeight*(Va + Vb) - costWeight*(r - Cb)^2 plus a constant, with r = idealTotalCost - Ca. Expanding the square, the part that depends on b is (valueWeight*Vb - costWeight*Cb^2) + 2*costWeight*r*Cb, a linear function of the point (Cb, valueWeight*Vb - costWeight*Cb^2). Its maximum over all b is therefore on the upper convex hull of those points and is found by a binary search for the slope -2*costWeight*r
+   * @return
+   *   (Chromosome) an optimal Chromosome, scored with Genotype.calculateFitness
+   */
+  public Chromosome solveMeetInTheMiddle() {
+    int lowerItems = numberOfItems / 2;
+    int upperItems = numberOfItems - lowerItems;
+    double valueWeight = genotype.getValueScoreWeight();
+    double costWeight = genotype.getCostScoreWeight();
+
+    // Sums of every subset of the upper half, in Gray code order. Subset b (a bit per upper Item) is stored at index b
+    int subsets = 1 << upperItems;
+    int[] upperValues = new int[subsets];
+    int[] upperCosts = new int[subsets];
+    int subset = 0;
+    int value = 0;
+    int cost = 0;
+    for (int i=1; i<subsets; i++) {
+      int bit = Integer.numberOfTrailingZeros(i);
+      subset ^= 1 << bit;
+      if ((subset & (1 << bit)) != 0) {
+        value += values[lowerItems + bit];
+        cost += costs[lowerItems + bit];
+      } else {
+        value -= values[lowerItems + bit];
+        cost -= costs[lowerItems + bit];
+      }
+      upperValues[subset] = value;
+      upperCosts[subset] = cost;
+    }
+
+    // Sort the subsets by cost. The cost is in the high 32 bits and the subset in the low 32 bits, so equal costs are ordered by subset
+    long[] byCost = new long[subsets];
+    for (int b=0; b<subsets; b++)
+      byCost[b] = ((long) upperCosts[b] << 32) | b;
+    Arrays.parallelSort(byCost);
+
+    // Build the upper hull of the points (cost, valueWeight*value - costWeight*cost^2). Of several subsets with the same cost only the one with the highest value can be on the hull
+    hullCosts = new int[subsets];
+    hullScores = new double[subsets];
+    hullSubsets = new int[subsets];
+    hullValues = new int[subsets];
+    int hullSize = 0;
+    for (int i=0; i<subsets; i++) {
+      int b = (int) byCost[i];
+      double score = valueWeight*upperValues[b] - costWeight*(double) upperCosts[b]*upperCosts[b];
+
+      if (hullSize>0 && hullCosts[hullSize-1] == upperCosts[b]) {
+        if (score<=hullScores[hullSize-1])
+          continue;
+        hullSize--;
+      }
+
+      // Remove the last point while it is not strictly above the line from the point before it to the new point
+      while (hullSize>=2) {
+        double cross = (hullScores[hullSize-1] - hullScores[hullSize-2]) * ((double) upperCosts[b] - hullCosts[hullSize-2])
+                     - (score - hullScores[hullSize-2]) * ((double) hullCosts[hullSize-1] - hullCosts[hullSize-2]);
+        if (cross>0)
+          break;
+        hullSize--;
+      }
+
+      hullCosts[hullSize] = upperCosts[b];
+      hullScores[hullSize] = score;
+      hullSubsets[hullSize] = b;
+      hullValues[hullSize] = upperValues[b];
+      hullSize++;
+    }
+    hullCosts = Arrays.copyOf(hullCosts, hullSize);
+    hullScores = Arrays.copyOf(hullScores, hullSize);
+    hullSubsets = Arrays.copyOf(hullSubsets, hullSize);
+    hullValues = Arrays.copyOf(hullValues, hullSize);
+
+    try {
+      return toChromosome(search(lowerItems));
+    } finally {
+      hullCosts = null;
+      hullScores = null;
+      hullSubsets = null;
+      hullValues = null;
+    }
+  }
+
+  /**
+   * Searches every subset of the Items [0, searchItems) on the pool. Without a hull searchItems is every Item, with a hull each subset is completed with the best subset of the upper half
+   * @param searchItems
+   *   (int) the number of Items whose subsets are enumerated
+   * @return
+   *   (long) the bits of the best subset of all Items
+   */
+  long search(int searchItems) {
+    int prefixBits = Math.min(PREFIX_BITS, searchItems - 1);
+    int tasks = 1 << prefixBits;
+    int[] bestScores = new int[tasks];
+    long[] bestMasks = new long[tasks];
+
+    pool.invoke(new SearchTask(0, tasks, searchItems - prefixBits, bestScores, bestMasks));
+
+    // Merge the best subset of each task in prefix order, so the result does not depend on the number of threads
+    int bestScore = bestScores[0];
+    long bestMask = bestMasks[0];
+    for (int t=1; t<tasks; t++) {
+      if (isBetter(bestScores[t], bestMasks[t], bestScore, bestMask)) {
+        bestScore = bestScores[t];
+        bestMask = bestMasks[t];
+      }
+    }
+    return bestMask;
+  }
+
+  // A higher score is better. Of equal scores the subset with the lower bits is better
+  static boolean isBetter(int score, long mask, int bestScore, long bestMask) {
+    return score>bestScore || (score == bestScore && mask<bestMask);
+  }
+
+  /**
+   * Creates the Chromosome of a subset and scores it with Genotype.calculateFitness
+   * @param mask
+   *   (long) the subset, bit i is gene i
+   * @return
+   *   (Chromosome) the scored Chromosome
+   */
+  Chromosome toChromosome(long mask) {
+    Chromosome chromosome = new Chromosome(numberOfItems);
+    chromosome.genes[0] = mask;
+    chromosome.setFitnessScore(genotype.calculateFitness(chromosome));
+    return chromosome;
+  }
+
+  /**
+   * Searches the subsets of a range of prefixes. A prefix fixes the highest prefix bits of the searched Items, and the lowBits Items below it are enumerated in Gray code order
+   */
+  class SearchTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final int fromPrefix;
+    final int toPrefix;
+    final int lowBits;
+    final int[] bestScores;
+    final long[] bestMasks;
+
+    SearchTask(int fromPrefix, int toPrefix, int lowBits, int[] bestScores, long[] bestMasks) {
+      this.fromPrefix = fromPrefix;
+      this.toPrefix = toPrefix;
+      this.lowBits = lowBits;
+      this.bestScores = bestScores;
+      this.bestMasks = bestMasks;
+    }
+
+    @Override
+    protected void compute() {
+      if (toPrefix - fromPrefix > 1) {
+        int mid = (fromPrefix + toPrefix) >>> 1;
+        invokeAll(new SearchTask(fromPrefix, mid, lowBits, bestScores, bestMasks), new SearchTask(mid, toPrefix, lowBits, bestScores, bestMasks));
+        return;
+      }
+
+      // Start from the subset holding only the prefix Items
+      long mask = (long) fromPrefix << lowBits;
+      int value = 0;
+      int cost = 0;
+      for (long bits = mask; bits != 0; bits &= bits - 1) {
+        int i = Long.numberOfTrailingZeros(bits);
+        value += values[i];
+        cost += costs[i];
+      }
+
+      int bestScore = Integer.MIN_VALUE;
+      long bestMask = -1;
+      long subsets = 1L << lowBits;
+      for (long i=0; i<subsets; i++) {
+        // Step i of the Gray code flips the bit of the lowest set bit of i
+        if (i>0) {
+          int bit = Long.numberOfTrailingZeros(i);
+          mask ^= 1L << bit;
+          if ((mask & (1L << bit)) != 0) {
+            value += values[bit];
+            cost += costs[bit];
+          } else {
+            value -= values[bit];
+            cost -= costs[bit];
+          }
+        }
+
+        int score;
+        long fullMask;
+        if (hullCosts == null) {
+          score = genotype.scoreFromSums(Genotype.packSums(value, cost));
+          fullMask = mask;
+        } else {
+          int j = bestUpper(cost);
+          score = genotype.scoreFromSums(Genotype.packSums(value + hullValues[j], cost + hullCosts[j]));
+          fullMask = mask | ((long) hullSubsets[j] << (numberOfItems / 2));
+        }
+
+        if (bestMask<0 || isBetter(score, fullMask, bestScore, bestMask)) {
+          bestScore = score;
+          bestMask = fullMask;
+        }
+      }
+
+      bestScores[fromPrefix] = bestScore;
+      bestMasks[fromPrefix] = bestMask;
+    }
+
+    // Returns the index of the hull point that completes a lower subset with the given cost best, by binary search for the point after which the objective decreases
+    int bestUpper(int lowerCost) {
+      double slope = 2*genotype.getCostScoreWeight()*((double) genotype.getIdealTotalCost() - lowerCost);
+      int lo = 0;
+      int hi = hullCosts.length - 1;
+      while (lo<hi) {
+        int mid = (lo + hi) >>> 1;
+        if (hullScores[mid+1] + slope*hullCosts[mid+1] > hullScores[mid] + slope*hullCosts[mid])
+          lo = mid + 1;
+        else
+          hi = mid;
+      }
+      return lo;
+    }
+  }
+}
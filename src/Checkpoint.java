@@ -0,0 +1,455 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * A binary checkpoint of a population, so that a long run can be resumed after its JVM stopped. See GeneticAlgorithm.setCheckpoint and GeneticAlgorithm.resumeAlgorithm1.
+ * A checkpoint holds the bit-packed genes, fitness scores and packed value and cost sums of every Chromosome, the generation and evaluation counters, and the state of the run's RandomStream, so a resumed seeded run produces the same generations as one that was never stopped. The selections of algorithm1 put the same Chromosome object into a Population more than once, and mutating it then mutates every place it is in, so a checkpoint also records which Chromosomes are the same object, and toPopulation shares them again.
+ * The file is an 80 byte header followed by four blocks (the genes as longs, the fitness scores as ints, the sums as longs and for each Chromosome the index of its first occurrence as ints), big-endian, each block and the header followed by the CRC32 of its bytes.
+ * save writes through a FileChannel into a temporary file next to the checkpoint, forces it to disk and then moves it over the checkpoint, so a JVM that dies while saving leaves the previous checkpoint intact. The columns are copied into the write buffer in bulk, so a save costs little more than writing the bytes.
+ * load reads the whole file into one heap buffer and verifies every CRC on views of it. restore and toPopulation then copy each block from the buffer into the columns of the population in one bulk transfer per block, so resuming reads the file once and parses nothing. The file is read rather than memory-mapped because a mapping stays open until it is garbage collected, and on Windows a file with an open mapping cannot be replaced, so the next checkpoint to the same path would fail.
+ *
+ * @author willj
+ */
+public class Checkpoint {
+  // Identifies a checkpoint file ("GACK"), and the version of its layout
+  static final int MAGIC = 0x4741434B;
+  static final int VERSION = 1;
+
+  // The header: MAGIC, VERSION, numberOfGenes, wordsPerChromosome, size, flags (ints), generation, evaluations, the 4 longs of the RandomStream state (longs), the checksum of the Genotype and the CRC32 of the preceding 76 bytes (ints)
+  static final int HEADER_BYTES = 80;
+
+  // Set in the flags when the header holds the state of a RandomStream
+  static final int FLAG_RANDOM_STATE = 1;
+
+  // The size of the buffer blocks are written through
+  static final int BUFFER_BYTES = 1 << 16;
+
+  // The header fields
+  int numberOfGenes;
+  int wordsPerChromosome;
+  int size;
+  long generation;
+  long evaluations;
+  long[] randomState;
+  int genotypeChecksum;
+
+  // The blocks, views of the file's buffer, already verified
+  ByteBuffer genes;
+  ByteBuffer fitnessScores;
+  ByteBuffer sums;
+  ByteBuffer firstOccurrences;
+
+  // The path the checkpoint was loaded from, for error messages
+  String path;
+
+  Checkpoint() {
+    // Created by load
+  }
+
+  /**
+   * Saves a PackedPopulation to a checkpoint
+   * @param path
+   *   (String) the path of the checkpoint file. An existing checkpoint is replaced once the new one is complete
+   * @param population
+   *   (PackedPopulation) the population. Its fitness scores and sums must be up to date, as they are after evaluate
+   * @param generation
+   *   (long) the number of generations evolved so far
+   * @param random
+   *   (Random) the source of randomness of the run. Its state is saved if it is a RandomStream
+   */
+  public static void save(String path, PackedPopulation population, long generation, Random random) {
+    int size = population.size();
+    int words = population.wordsPerChromosome;
+    try (Writer writer = new Writer(path)) {
+      writer.header(population.genotype, population.numberOfGenes, words, size, generation, random);
+
+      // The Chromosomes are back to back in the columns, so each block is one bulk copy per buffer
+      writer.putLongs(population.genes, 0, size * words);
+      writer.endBlock();
+      writer.putInts(population.fitnessScores, 0, size);
+      writer.endBlock();
+      writer.putLongs(population.sums, 0, size);
+      writer.endBlock();
+      // Every Chromosome of a PackedPopulation has its own words
+      for (int i=0; i<size; i++)
+        writer.putInt(i);
+      writer.endBlock();
+
+      writer.commit();
+    }
+  }
+
+  /**
+   * Saves a Population to a checkpoint
+   * @param path
+   *   (String) the path of the checkpoint file. An existing checkpoint is replaced once the new one is complete
+   * @param population
+   *   (Population) the population. Its fitness scores must be up to date
+   * @param generation
+   *   (long) the number of generations evolved so far
+   * @param random
+   *   (Random) the source of randomness of the run. Its state is saved if it is a RandomStream
+   */
+  public static void save(String path, Population population, long generation, Random random) {
+    Genotype genotype = population.getGenotype();
+    int size = population.size();
+    int numberOfGenes = genotype.genesCount();
+    int words = Chromosome.wordCount(numberOfGenes);
+    try (Writer writer = new Writer(path)) {
+      writer.header(genotype, numberOfGenes, words, size, generation, random);
+
+      for (int i=0; i<size; i++)
+        writer.putLongs(population.get(i).genes, 0, words);
+      writer.endBlock();
+      for (int i=0; i<size; i++)
+        writer.putInt(population.get(i).getFitnessScore());
+      writer.endBlock();
+      for (int i=0; i<size; i++) {
+        // Sums that were not tracked since the genes last changed are calculated, so the resumed Chromosomes can all be mutated with delta updates
+        Chromosome chromosome = population.get(i);
+        writer.putLong(chromosome.sumsValid ? chromosome.sums : genotype.calculateSums(chromosome.genes, 0, words));
+      }
+      writer.endBlock();
+      IdentityHashMap<Chromosome, Integer> firstOccurrences = new IdentityHashMap<Chromosome, Integer>();
+      for (int i=0; i<size; i++) {
+        Integer first = firstOccurrences.putIfAbsent(population.get(i), i);
+        writer.putInt(first == null ? i : first);
+      }
+      writer.endBlock();
+
+      writer.commit();
+    }
+  }
+
+  /**
+   * Reads a checkpoint written by save. The file is read into a heap buffer and closed before load returns, so the checkpoint can be saved over again. The CRC of the header and of every block is verified
+   * @param path
+   *   (String) the path of the checkpoint file
+   * @return
+   *   (Checkpoint) the checkpoint, ready to restore
+   */
+  public static Checkpoint load(String path) {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      if (channel.size()<HEADER_BYTES)
+        throw new IllegalArgumentException(path + " is not a checkpoint.");
+      if (channel.size()>Integer.MAX_VALUE)
+        throw new IllegalArgumentException(path + " is too large to be a checkpoint.");
+      ByteBuffer file = ByteBuffer.allocate((int) channel.size());
+      while (file.hasRemaining())
+        if (channel.read(file)<0)
+          throw new IllegalArgumentException(path + " is not a complete checkpoint.");
+      file.flip();
+
+      if (file.getInt(0) != MAGIC)
+        throw new IllegalArgumentException(path + " is not a checkpoint.");
+      int version = file.getInt(4);
+      if (version != VERSION)
+        throw new IllegalArgumentException(path + " is a version " + version + " checkpoint. Only version " + VERSION + " can be read.");
+      verify(file, 0, HEADER_BYTES - 4, path, "header");
+
+      Checkpoint checkpoint = new Checkpoint();
+      checkpoint.path = path;
+      ByteBuffer header = slice(file, 8, HEADER_BYTES - 8);
+      checkpoint.numberOfGenes = header.getInt();
+      checkpoint.wordsPerChromosome = header.getInt();
+      checkpoint.size = header.getInt();
+      int flags = header.getInt();
+      checkpoint.generation = header.getLong();
+      checkpoint.evaluations = header.getLong();
+      long[] state = new long[4];
+      for (int i=0; i<4; i++)
+        state[i] = header.getLong();
+      if ((flags & FLAG_RANDOM_STATE) != 0)
+        checkpoint.randomState = state;
+      checkpoint.genotypeChecksum = header.getInt();
+
+      // The header is intact, so these only fail for truncated files or files written by something else
+      long size = checkpoint.size;
+      long geneBytes = 8L * size * checkpoint.wordsPerChromosome;
+      if (size<0 || checkpoint.wordsPerChromosome != Chromosome.wordCount(checkpoint.numberOfGenes)
+          || channel.size() != HEADER_BYTES + geneBytes + 4L * size + 8L * size + 4L * size + 16)
+        throw new IllegalArgumentException(path + " is not a complete checkpoint.");
+
+      long position = HEADER_BYTES;
+      checkpoint.genes = verify(file, position, geneBytes, path, "genes");
+      position += geneBytes + 4;
+      checkpoint.fitnessScores = verify(file, position, 4L * size, path, "fitness scores");
+      position += 4L * size + 4;
+      checkpoint.sums = verify(file, position, 8L * size, path, "sums");
+      position += 8L * size + 4;
+      checkpoint.firstOccurrences = verify(file, position, 4L * size, path, "first occurrences");
+      return checkpoint;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read " + path, e);
+    }
+  }
+
+  // Checks the CRC32 that follows the block [position, position + length) of the file, and returns the block
+  static ByteBuffer verify(ByteBuffer file, long position, long length, String path, String block) {
+    ByteBuffer bytes = slice(file, position, length);
+    CRC32 crc = new CRC32();
+    crc.update(bytes.duplicate());
+    if ((int) crc.getValue() != file.getInt((int) (position + length)))
+      throw new IllegalArgumentException("The " + block + " block of checkpoint " + path + " is corrupt (CRC mismatch).");
+    return bytes;
+  }
+
+  // A view of [position, position + length) of the file, sharing its bytes
+  static ByteBuffer slice(ByteBuffer file, long position, long length) {
+    ByteBuffer bytes = file.duplicate();
+    bytes.position((int) position).limit((int) (position + length));
+    return bytes.slice();
+  }
+
+  /**
+   * Copies the Chromosomes of the checkpoint into a PackedPopulation, replacing its Chromosomes, and recalculates its statistics
+   * @param population
+   *   (PackedPopulation) the population. Its Genotype must be the one the checkpoint was saved with, and its capacity at least getSize()
+   */
+  public void restore(PackedPopulation population) {
+    checkGenotype(population.genotype);
+    if (population.capacity()<size)
+      throw new IllegalArgumentException("The checkpoint has " + size + " Chromosomes, more than the capacity of the population.");
+
+    population.clear();
+    genes.duplicate().asLongBuffer().get(population.genes, 0, size * wordsPerChromosome);
+    fitnessScores.duplicate().asIntBuffer().get(population.fitnessScores, 0, size);
+    sums.duplicate().asLongBuffer().get(population.sums, 0, size);
+    population.size = size;
+    population.calculateStatistics();
+  }
+
+  /**
+   * Creates a Population with the Chromosomes of the checkpoint. The Chromosomes keep their fitness scores and sums, so nothing is scored again, and Chromosomes that were the same object when saved are the same object again
+   * @param genotype
+   *   (Genotype) the Genotype the checkpoint was saved with
+   * @param evaluator
+   *   (PopulationEvaluator) the evaluator of the Population, or null
+   * @return
+   *   (Population) the Population, in the order it was saved in
+   */
+  public Population toPopulation(Genotype genotype, PopulationEvaluator evaluator) {
+    checkGenotype(genotype);
+
+    Population population = new Population(genotype, evaluator);
+    LongBuffer geneWords = genes.duplicate().asLongBuffer();
+    for (int i=0; i<size; i++) {
+      int first = firstOccurrences.getInt(4 * i);
+      if (first<0 || first>i)
+        throw new IllegalArgumentException(path + " is not a complete checkpoint.");
+      if (first<i) {
+        geneWords.position(geneWords.position() + wordsPerChromosome);
+        population.addScored(population.get(first));
+        continue;
+      }
+
+      Chromosome chromosome = new Chromosome(numberOfGenes);
+      geneWords.get(chromosome.genes, 0, wordsPerChromosome);
+      chromosome.setFitnessScore(fitnessScores.getInt(4 * i));
+      chromosome.sums = sums.getLong(8 * i);
+      chromosome.sumsValid = true;
+      population.addScored(chromosome);
+    }
+    return population;
+  }
+
+  // Throws if genotype is not the Genotype the checkpoint was saved with, whose fitness scores would not match the genes
+  void checkGenotype(Genotype genotype) {
+    if (genotype.genesCount() != numberOfGenes)
+      throw new IllegalArgumentException("The checkpoint " + path + " has " + numberOfGenes + " genes, the Genotype has " + genotype.genesCount() + " Items.");
+    if (checksum(genotype) != genotypeChecksum)
+      throw new IllegalArgumentException("The checkpoint " + path + " was saved with a different Genotype.");
+  }
+
+  /**
+   * Returns the CRC32 of the Items, idealTotalCost and weights of a Genotype, which a checkpoint keeps to tell whether it is resumed with the Genotype it was saved with
+   * @param genotype
+   *   (Genotype) the Genotype
+   * @return
+   *   (int) the checksum
+   */
+  static int checksum(Genotype genotype) {
+    int count = genotype.itemCount;
+    ByteBuffer buffer = ByteBuffer.allocate(24 + 8 * count);
+    buffer.putInt(count).putInt(genotype.idealTotalCost).putDouble(genotype.valueScoreWeight).putDouble(genotype.costScoreWeight);
+    buffer.asIntBuffer().put(genotype.values, 0, count).put(genotype.costs, 0, count);
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array());
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Getter for the generation counter
+   * @return
+   *   (long) the number of generations evolved when the checkpoint was saved
+   */
+  public long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Getter for the evaluation counter
+   * @return
+   *   (long) the Genotype's getEvaluationCount() when the checkpoint was saved
+   */
+  public long getEvaluations() {
+    return evaluations;
+  }
+
+  /**
+   * Getter for the state of the run's source of randomness
+   * @return
+   *   (long[]) the RandomStream state to continue from with new RandomStream(state), or null if the run did not use a RandomStream
+   */
+  public long[] getRandomState() {
+    return randomState == null ? null : randomState.clone();
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getNumberOfGenes() {
+    return numberOfGenes;
+  }
+
+  /**
+   * Writes a checkpoint into a temporary file through one direct buffer, keeping the CRC32 of the current block, and moves it over the checkpoint on commit
+   */
+  static class Writer implements AutoCloseable {
+    final Path target;
+    final Path temporary;
+    final FileChannel channel;
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    final CRC32 crc = new CRC32();
+    boolean committed;
+
+    Writer(String path) {
+      target = Paths.get(path).toAbsolutePath();
+      temporary = target.resolveSibling(target.getFileName() + ".tmp");
+      try {
+        channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not write " + temporary, e);
+      }
+    }
+
+    // Writes the header and its CRC
+    void header(Genotype genotype, int numberOfGenes, int words, int size, long generation, Random random) {
+      long[] state = random instanceof RandomStream ? ((RandomStream) random).getState() : new long[4];
+      putInt(MAGIC);
+      putInt(VERSION);
+      putInt(numberOfGenes);
+      putInt(words);
+      putInt(size);
+      putInt(random instanceof RandomStream ? FLAG_RANDOM_STATE : 0);
+      putLong(generation);
+      putLong(genotype.getEvaluationCount());
+      for (long word : state)
+        putLong(word);
+      putInt(checksum(genotype));
+      endBlock();
+    }
+
+    void putInt(int value) {
+      if (buffer.remaining()<4)
+        flush();
+      buffer.putInt(value);
+    }
+
+    void putLong(long value) {
+      if (buffer.remaining()<8)
+        flush();
+      buffer.putLong(value);
+    }
+
+    // Copies ints in bulk, a buffer at a time
+    void putInts(int[] values, int offset, int count) {
+      while (count>0) {
+        if (buffer.remaining()<4)
+          flush();
+        int n = Math.min(count, buffer.remaining() / 4);
+        buffer.asIntBuffer().put(values, offset, n);
+        buffer.position(buffer.position() + 4 * n);
+        offset += n;
+        count -= n;
+      }
+    }
+
+    // Copies longs in bulk, a buffer at a time
+    void putLongs(long[] values, int offset, int count) {
+      while (count>0) {
+        if (buffer.remaining()<8)
+          flush();
+        int n = Math.min(count, buffer.remaining() / 8);
+        buffer.asLongBuffer().put(values, offset, n);
+        buffer.position(buffer.position() + 8 * n);
+        offset += n;
+        count -= n;
+      }
+    }
+
+    // Adds the buffered bytes to the CRC of the block and writes them
+    void flush() {
+      buffer.flip();
+      crc.update(buffer);
+      buffer.rewind();
+      try {
+        while (buffer.hasRemaining())
+          channel.write(buffer);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not write " + temporary, e);
+      }
+      buffer.clear();
+    }
+
+    // Ends a block by writing its CRC, which is not part of the next block's CRC
+    void endBlock() {
+      flush();
+      buffer.putInt((int) crc.getValue());
+      flush();
+      crc.reset();
+    }
+
+    // Forces the checkpoint to disk and moves it over the previous one
+    void commit() {
+      try {
+        channel.force(true);
+        channel.close();
+        try {
+          Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not write " + target, e);
+      }
+    }
+
+    // An unfinished checkpoint is deleted, leaving the previous one
+    @Override
+    public void close() {
+      if (committed)
+        return;
+      try {
+        channel.close();
+        Files.deleteIfExists(temporary);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not delete " + temporary, e);
+      }
+    }
+  }
+}
@@ -1,3 +1,5 @@
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Represents a subset of the Item objects contained in a Genotype. Collections of Chromosomes are maintained and stored within a Population object. Since a "solution" for a Genetic Algorithm is a collection of Items, a Chromosome can be thought of as a candidate solution.
@@ -7,12 +9,23 @@
  */
 public class Chromosome implements Comparable<Chromosome> {
   
-  // The genes of a Chromosome are an array of length n where n is the number of Items in the Genotype. Array index n of genes relates to the nth Item in the Genotype arraylist. Array index values are either 0 or 1, with 0 meaning the related Item of the Genotype is included in the Chromosome, and 1 meaning the related Item of the Genotype is included in the Chromosome. 
-  public int[] genes;
+  // The genes of a Chromosome are bit-packed into an array of longs, 64 genes per word. Gene n is bit (n % 64) of word (n / 64) and relates to the nth Item in the Genotype arraylist. Bit values are either 0 or 1, with 0 meaning the related Item of the Genotype is not included in the Chromosome, and 1 meaning the related Item of the Genotype is included in the Chromosome. Compared to one int per gene this uses 32 times less memory.
+  // The bits of the last word past the number of genes are always kept at 0, so whole words can be compared, counted, and copied without masking.
+  public long[] genes;
+  
+  // The number of genes of the Chromosome. This cannot be derived from genes.length since the last word may only be partially used
+  int numberOfGenes;
   
   // The Chromosome's fitnessScore is an int rating of how well the Chromosome (candidate solution) solves our problem. The fitnessScore is calculated by the Genotype. The Chromosome's fitnessScore is maintained by its Population - the Population will use the Genotype to calculate the fitnessScore and set it here.
   int fitnessScore;
   
+  // Above this mutation rate mutate tests every gene with its own random number, below it the gaps between flipped genes are sampled directly
+  static final double DENSE_MUTATION_RATE = 0.25;
+  
+  // The sum of the values (high 32 bits) and the sum of the costs (low 32 bits) of the Items included in the Chromosome, set by Genotype.calculateFitness. They let mutate(mutationRate, genotype) update the fitnessScore from only the flipped genes. sumsValid is false whenever the genes were changed in a way that was not tracked, in which case the next delta update starts with a full calculation
+  long sums;
+  boolean sumsValid;
+  
   /**
    * Constructor
    * @param numberOfGenes
@@ -20,11 +33,12 @@ public class Chromosome implements Comparable<Chromosome> {
    */
   public Chromosome(int numberOfGenes) {
     // If the number of genes is very few (less than 4) a Genetic Algorithm should not be used. Additionally, selection methods such as singlePointCrossover, twoPointCrossover, and threePointCrossover will not output the desired result since for example 2 items cannot be divided into thirds 
-    if (numberOfGenes>4)
+    if (numberOfGenes<4)
       throw new IllegalArgumentException("There must be at least 4 Items in the Genotype.");
     
-    // Initialize genes as an array of length numberOfGenes
-    genes = new int[numberOfGenes];
+    // Initialize genes as enough 64 bit words to hold numberOfGenes bits. All genes start as 0 (not included)
+    this.numberOfGenes = numberOfGenes;
+    genes = new long[wordCount(numberOfGenes)];
     
     // Initialize fitnessScore as 0. We cannot get the fitnessScore because we don't know what our Genotype is. We also don't know what our Items will be
     fitnessScore = 0;
@@ -37,18 +51,98 @@ public class Chromosome implements Comparable<Chromosome> {
    */
   public Chromosome(int[] values) {
     // If the number of genes is very few (less than 4) a Genetic Algorithm should not be used. Additionally, selection methods such as singlePointCrossover, twoPointCrossover, and threePointCrossover will not output the desired result since for example 2 items cannot be divided into thirds 
-    if (values.length>4)
+    if (values.length<4)
       throw new IllegalArgumentException("There must be at least 4 Items in the Genotype.");
     
-    // Initialize genes as an array of length numberOfGenes
-    genes = new int[values.length];
+    // Initialize genes as enough 64 bit words to hold values.length bits
+    numberOfGenes = values.length;
+    genes = new long[wordCount(numberOfGenes)];
     
     // Initialize fitnessScore as 0. We cannot get the fitnessScore because we don't know what our Genotype is
     fitnessScore = 0;
     
-    // Copy the provided values to gene array
+    // Pack the provided values into the gene words
     for (int i=0; i<values.length; i++)
-      genes[i] = values[i];
+      setGene(i, values[i]);
+  }
+  
+  /**
+   * Copy constructor. The new Chromosome has its own copy of the genes and the same fitnessScore as the original
+   * @param original
+   *   (Chromosome) the Chromosome to copy
+   */
+  public Chromosome(Chromosome original) {
+    numberOfGenes = original.numberOfGenes;
+    genes = original.genes.clone();
+    fitnessScore = original.fitnessScore;
+    sums = original.sums;
+    sumsValid = original.sumsValid;
+  }
+  
+  /**
+   * Returns the number of 64 bit words required to store a number of bit-packed genes
+   * @param numberOfGenes
+   *   (int) the number of genes
+   * @return
+   *   (int) the number of long words needed to hold numberOfGenes bits
+   */
+  static int wordCount(int numberOfGenes) {
+    return (numberOfGenes + 63) >>> 6;
+  }
+  
+  /**
+   * Copies the genes in the range [from, to) from one bit-packed gene array to another. Whole words in the middle of the range are copied with System.arraycopy and only the first and last words of the range are masked.
+   * The offsets allow the gene arrays to be slices of a larger buffer holding many Chromosomes.
+   * @param source
+   *   (long[]) the gene words to copy from
+   * @param sourceOffset
+   *   (int) the index of the first word of the source Chromosome in source
+   * @param target
+   *   (long[]) the gene words to copy into
+   * @param targetOffset
+   *   (int) the index of the first word of the target Chromosome in target
+   * @param from
+   *   (int) the first gene index to copy (inclusive)
+   * @param to
+   *   (int) the last gene index to copy (exclusive)
+   */
+  static void copyGeneRange(long[] source, int sourceOffset, long[] target, int targetOffset, int from, int to) {
+    // Nothing to copy for an empty range
+    if (from >= to)
+      return;
+    
+    int firstWord = from >>> 6;
+    int lastWord = (to - 1) >>> 6;
+    
+    // Mask of the bits at and above from in the first word, and of the bits below to in the last word. Java masks shift distances to 6 bits, so -to shifts by 64 - (to % 64), which is 0 (all bits kept) when to is a multiple of 64
+    long firstMask = -1L << from;
+    long lastMask = -1L >>> -to;
+    
+    // If the range is within a single word we only need to merge the bits of both masks
+    if (firstWord == lastWord) {
+      long mask = firstMask & lastMask;
+      target[targetOffset + firstWord] = (target[targetOffset + firstWord] & ~mask) | (source[sourceOffset + firstWord] & mask);
+      return;
+    }
+    
+    // Merge the partial first word, copy the whole words in between, and merge the partial last word
+    target[targetOffset + firstWord] = (target[targetOffset + firstWord] & ~firstMask) | (source[sourceOffset + firstWord] & firstMask);
+    System.arraycopy(source, sourceOffset + firstWord + 1, target, targetOffset + firstWord + 1, lastWord - firstWord - 1);
+    target[targetOffset + lastWord] = (target[targetOffset + lastWord] & ~lastMask) | (source[sourceOffset + lastWord] & lastMask);
+  }
+  
+  /**
+   * Copies the genes in the range [from, to) from a parent Chromosome to this Chromosome
+   * @param parent
+   *   (Chromosome) the Chromosome whose genes will be copied
+   * @param from
+   *   (int) the first gene index to copy (inclusive)
+   * @param to
+   *   (int) the last gene index to copy (exclusive)
+   */
+  private void copyGenes(Chromosome parent, int from, int to) {
+    copyGeneRange(parent.genes, 0, this.genes, 0, from, to);
+    sumsValid = false;
   }
   
   /**
@@ -71,12 +165,10 @@ public class Chromosome implements Comparable<Chromosome> {
     int midPoint = chromosomeSize / 2;
     
     // Copy gene[0] to gene[midPoint-1] from parent1 to this Chromosome
-    for (int i = 0; i<midPoint; i++)
-      setGene(i,parent1.getGene(i));
+    copyGenes(parent1, 0, midPoint);
     
     // Copy gene[midPoint] to the end of the gene array from parent2 to this Chromosome
-    for (int i = midPoint; i<this.geneCount(); i++)
-      setGene(i,parent2.getGene(i));
+    copyGenes(parent2, midPoint, chromosomeSize);
   }
   
   /**
@@ -101,16 +193,13 @@ public class Chromosome implements Comparable<Chromosome> {
     int secondPoint = chromosomeSize / 3 * 2;
     
     // Copy gene[0] to gene[firstPoint-1] from parent1 to this Chromosome
-    for (int i = 0; i<firstPoint; i++)
-      setGene(i,parent1.getGene(i));
+    copyGenes(parent1, 0, firstPoint);
     
     // Copy gene[firstPoint] to gene[secondPoint-1] from parent2 to this Chromosome
-    for (int i = firstPoint; i<secondPoint; i++)
-      setGene(i,parent2.getGene(i));
+    copyGenes(parent2, firstPoint, secondPoint);
     
     // Copy gene[secondPoint] to the end of the gene array from parent1 to this Chromosome
-    for (int i = secondPoint; i<chromosomeSize; i++)
-      setGene(i,parent1.getGene(i));
+    copyGenes(parent1, secondPoint, chromosomeSize);
   }  
   
   /**
@@ -136,20 +225,16 @@ public class Chromosome implements Comparable<Chromosome> {
     int thirdPoint = chromosomeSize / 4 * 3;
     
     // Copy gene[0] to gene[firstPoint-1] from parent1 to this Chromosome
-    for (int i=0; i<firstPoint; i++)
-      setGene(i,parent1.getGene(i));
+    copyGenes(parent1, 0, firstPoint);
     
     // Copy gene[firstPoint] to gene[secondPoint-1] from parent2 to this Chromosome
-    for (int i=firstPoint; i<secondPoint; i++)
-      setGene(i,parent2.getGene(i));
+    copyGenes(parent2, firstPoint, secondPoint);
     
     // Copy gene[secondPoint] to gene[thirdPoint-1] from parent1 to this Chromosome
-    for (int i=secondPoint; i<thirdPoint; i++)
-      setGene(i,parent1.getGene(i));
+    copyGenes(parent1, secondPoint, thirdPoint);
     
     // Copy gene[thirdPoint] to the end of the gene array from parent2 to this Chromosome
-    for (int i=thirdPoint; i<chromosomeSize; i++)
-      setGene(i,parent2.getGene(i));
+    copyGenes(parent2, thirdPoint, chromosomeSize);
   }
   
   /**
@@ -161,6 +246,19 @@ public class Chromosome implements Comparable<Chromosome> {
    *   (Chromosome) the parent Chromosome whose genes will supply some of this Chromosome's genes
    */
   public void randomCrossover(Chromosome parent1, Chromosome parent2) {
+    randomCrossover(parent1, parent2, ThreadLocalRandom.current());
+  }
+  
+  /**
+   * randomCrossover with a provided source of randomness, so that a run with a seeded RandomStream is reproducible
+   * @param parent1
+   *   (Chromosome) the parent Chromosome whose genes will supply some of this Chromosome's genes
+   * @param parent2
+   *   (Chromosome) the parent Chromosome whose genes will supply some of this Chromosome's genes
+   * @param random
+   *   (Random) the source of randomness
+   */
+  public void randomCrossover(Chromosome parent1, Chromosome parent2, Random random) {
     // We get and store the Chromosome length since we use it multiple times
     int chromosomeSize = this.geneCount();
     
@@ -168,45 +266,260 @@ public class Chromosome implements Comparable<Chromosome> {
     if (parent1.geneCount() != chromosomeSize || parent2.geneCount() != chromosomeSize)
       throw new IllegalArgumentException("Parents should have equal geneCount.");
     
-    // Iterate through each gene of this Chromosome, choose a parent at random and the value at that gene's index from that parent to this Chromosome
-    for (int i = 0; i<chromosomeSize; i++) {
-      // Randomly choose a parent with 50% chance each
-      if (Math.random() < 0.5)
-        // parent1 is chosen, copy gene(i) from the parent to gene(i) of this Chromosome
-        setGene(i,parent1.getGene(i));
-      else
-        // parent2 is chosen, copy gene(i) from the parent to gene(i) of this Chromosome
-        setGene(i,parent2.getGene(i));
+    randomCrossover(parent1.genes, 0, parent2.genes, 0, this.genes, 0, genes.length, random);
+    sumsValid = false;
+  }
+  
+  /**
+   * randomCrossover for Chromosomes stored as slices of gene word arrays, shared by Chromosome and PackedPopulation
+   * @param parent1
+   *   (long[]) the gene words of the first parent
+   * @param parent1Offset
+   *   (int) the index of the first parent's first word
+   * @param parent2
+   *   (long[]) the gene words of the second parent
+   * @param parent2Offset
+   *   (int) the index of the second parent's first word
+   * @param child
+   *   (long[]) the gene words of the child
+   * @param childOffset
+   *   (int) the index of the child's first word
+   * @param wordCount
+   *   (int) the number of gene words of each Chromosome
+   * @param random
+   *   (Random) the source of randomness
+   */
+  static void randomCrossover(long[] parent1, int parent1Offset, long[] parent2, int parent2Offset, long[] child, int childOffset, int wordCount, Random random) {
+    // Iterate through each gene word of the child. Each bit of a random long chooses a parent with 50% chance each: where the mask bit is 1 the gene is copied from parent1, where it is 0 the gene is copied from parent2
+    // The unused bits of the parents' last words are 0, so the unused bits of the child's last word stay 0
+    for (int w = 0; w<wordCount; w++) {
+      long mask = random.nextLong();
+      child[childOffset + w] = (parent1[parent1Offset + w] & mask) | (parent2[parent2Offset + w] & ~mask);
     }
   }
   
   /**
-   * We iterate through every gene of this Chromosome and flip its value (from 1 (included) to 0 (not included) or vice versa) with a chance mutationRate. It performs bit flip mutation.
+   * We iterate through every gene of this Chromosome and flip its value (from 1 (included) to 0 (not included) or vice versa) with a chance mutationRate. It performs bit flip mutation. At low rates the genes between flips are skipped rather than visited, see mutate(genes, offset, numberOfGenes, mutationRate, random, genotype, sums)
    * This helps us escape from a local maxima. If our Chromosomes have converged and become very similar but a better solution could be achieved, making some changes to some Chromosomes may result in a better solution. 
    * @param mutationRate
    *   (double) the chance with which a gene's value will flip. Values between 0.001  0.05 are recommended
    */
   public void mutate(double mutationRate) {
-    // Iterate through each gene of the Chromosome and bit flip with a chance mutationRate
-    for (int i=0; i<this.geneCount(); i++) {
-      // Generate a random double between 0 and 1 and compare it to mutationRate. If the randomly generated value is 
-      if (Math.random() <= mutationRate) {
-        if (genes[i] == 0)
-          genes[i] = 1;
-        else
-          genes[i] = 0;
+    mutate(mutationRate, ThreadLocalRandom.current());
+  }
+  
+  /**
+   * Bit flip mutation with a provided source of randomness. See mutate(mutationRate)
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param random
+   *   (Random) the source of randomness
+   */
+  public void mutate(double mutationRate, Random random) {
+    mutate(genes, 0, numberOfGenes, mutationRate, random);
+    sumsValid = false;
+  }
+  
+  /**
+   * Calculates and sets the fitnessScore, and keeps the value and cost sums so that a later mutate(mutationRate, genotype) only has to apply the flipped genes. Unlike Genotype.calculateFitness this writes the Chromosome, so a Chromosome must not be evaluated by two threads at once
+   * @param genotype
+   *   (Genotype) the Genotype the Chromosome is scored with
+   * @return
+   *   (int) the fitnessScore
+   */
+  public int evaluate(Genotype genotype) {
+    sums = genotype.calculateSums(genes, 0, genes.length);
+    sumsValid = true;
+    fitnessScore = genotype.scoreFromSums(sums);
+    return fitnessScore;
+  }
+  
+  /**
+   * Bit flip mutation that also updates the fitnessScore. Instead of rescoring every gene, the value and cost of each flipped gene's Item are added to or subtracted from the Chromosome's sums, so the update costs work only for the flipped genes
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip. Values between 0.001  0.05 are recommended
+   * @param genotype
+   *   (Genotype) the Genotype the Chromosome is scored with
+   */
+  public void mutate(double mutationRate, Genotype genotype) {
+    mutate(mutationRate, genotype, ThreadLocalRandom.current());
+  }
+  
+  /**
+   * Bit flip mutation that also updates the fitnessScore, with a provided source of randomness. See mutate(mutationRate, genotype)
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param genotype
+   *   (Genotype) the Genotype the Chromosome is scored with
+   * @param random
+   *   (Random) the source of randomness
+   */
+  public void mutate(double mutationRate, Genotype genotype, Random random) {
+    // If the genes were changed since they were last scored the sums are calculated in full once
+    if (!sumsValid)
+      sums = genotype.calculateSums(genes, 0, genes.length);
+    
+    sums = mutate(genes, 0, numberOfGenes, mutationRate, random, genotype, sums);
+    fitnessScore = genotype.scoreFromSums(sums);
+  }
+  
+  /**
+   * Bit flip mutation of a Chromosome stored as a slice of a gene word array, shared by Chromosome and PackedPopulation
+   * @param genes
+   *   (long[]) the gene words
+   * @param offset
+   *   (int) the index of the Chromosome's first word
+   * @param numberOfGenes
+   *   (int) the number of genes of the Chromosome
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param random
+   *   (Random) the source of randomness
+   */
+  static void mutate(long[] genes, int offset, int numberOfGenes, double mutationRate, Random random) {
+    mutate(genes, offset, numberOfGenes, mutationRate, random, null, 0);
+  }
+  
+  /**
+   * Bit flip mutation of a Chromosome stored as a slice of a gene word array that also updates the Chromosome's packed value and cost sums from the flipped genes
+   * @param genes
+   *   (long[]) the gene words
+   * @param offset
+   *   (int) the index of the Chromosome's first word
+   * @param numberOfGenes
+   *   (int) the number of genes of the Chromosome
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param random
+   *   (Random) the source of randomness
+   * @param genotype
+   *   (Genotype) the Genotype used to update the sums, or null if the sums are not tracked
+   * @param sums
+   *   (long) the packed sums of the Chromosome before the mutation, see Genotype.packSums
+   * @return
+   *   (long) the packed sums of the Chromosome after the mutation, or sums unchanged if genotype is null
+   */
+  static long mutate(long[] genes, int offset, int numberOfGenes, double mutationRate, Random random, Genotype genotype, long sums) {
+    // Nothing is ever flipped
+    if (mutationRate <= 0)
+      return sums;
+    
+    // Every gene is flipped. The unused bits of the last word must stay 0
+    if (mutationRate >= 1) {
+      int lastWord = wordCount(numberOfGenes) - 1;
+      for (int w=0; w<=lastWord; w++)
+        sums = flipWord(genes, offset, w, w == lastWord ? -1L >>> -numberOfGenes : -1L, genotype, sums);
+      return sums;
+    }
+    
+    // At high rates most genes are visited anyway, so one random double per gene is cheaper than one logarithm per flip
+    if (mutationRate > DENSE_MUTATION_RATE) {
+      // Iterate through each gene word of the Chromosome, build a mask of the genes to flip with a chance mutationRate each and flip them all at once
+      for (int w=0; w<wordCount(numberOfGenes); w++) {
+        // The last word may only be partially used, we must not flip its unused bits
+        int bitsInWord = Math.min(64, numberOfGenes - (w << 6));
+        long flipMask = 0;
+        
+        for (int b=0; b<bitsInWord; b++)
+          // Generate a random double between 0 and 1 and compare it to mutationRate. If the randomly generated value is smaller or equal the gene is flipped
+          if (random.nextDouble() <= mutationRate)
+            flipMask |= 1L << b;
+        
+        sums = flipWord(genes, offset, w, flipMask, genotype, sums);
       }
+      return sums;
     }
+    
+    // Each gene flips independently with a chance mutationRate, so the number of genes skipped before the next flip follows a geometric distribution: P(skip = k) = (1-mutationRate)^k * mutationRate. It is sampled by inversion as floor(ln(U) / ln(1-mutationRate)) with U uniform in (0, 1], which jumps straight to the next flipped gene. The work is proportional to the number of flips instead of the number of genes, and the flipped genes have the same distribution as when every gene is tested
+    double logKeepRate = Math.log1p(-mutationRate);
+    long gene = -1;
+    int w = 0;
+    long flipMask = 0;
+    while (true) {
+      // 1 - nextDouble() is in (0, 1], so the logarithm is finite. A huge skip saturates the cast to Long.MAX_VALUE and ends the loop
+      long skip = (long) (Math.log(1.0 - random.nextDouble()) / logKeepRate);
+      gene += skip + 1;
+      if (gene >= numberOfGenes || gene < 0)
+        break;
+      
+      // The flips are collected per word, so each word is written (and its sums updated) once
+      int geneWord = (int) (gene >>> 6);
+      if (geneWord != w) {
+        sums = flipWord(genes, offset, w, flipMask, genotype, sums);
+        w = geneWord;
+        flipMask = 0;
+      }
+      flipMask |= 1L << gene;
+    }
+    return flipWord(genes, offset, w, flipMask, genotype, sums);
+  }
+  
+  /**
+   * Flips the genes of one word of a Chromosome and updates its packed sums from the flipped genes
+   * @param genes
+   *   (long[]) the gene words
+   * @param offset
+   *   (int) the index of the Chromosome's first word
+   * @param w
+   *   (int) the index of the word within the Chromosome
+   * @param flipMask
+   *   (long) the bits of the word to flip
+   * @param genotype
+   *   (Genotype) the Genotype used to update the sums, or null if the sums are not tracked
+   * @param sums
+   *   (long) the packed sums before the flips
+   * @return
+   *   (long) the packed sums after the flips
+   */
+  private static long flipWord(long[] genes, int offset, int w, long flipMask, Genotype genotype, long sums) {
+    if (flipMask == 0)
+      return sums;
+    
+    genes[offset + w] ^= flipMask;
+    
+    // Only the flipped genes change the sums
+    if (genotype != null)
+      sums = genotype.applyFlips(sums, w, genes[offset + w], flipMask);
+    return sums;
   }
   
   /**
    * Sets the values of genes randomly. For each gene there is a 50% chance that it will be set to 1 (chosen) and a 50% chance it will be set to 0 (not chosen)
    */
   public void setRandomGenes() {
-    // For each gene generate a random double between 0 and 1. If the randomly generated value is < 0.5 we set the bit value to 1 (included). If the randomly generated value is >.5 we set the bit value to 0 (not included)
-    for (int i=0; i<geneCount(); i++) {
-      genes[i] = (Math.random() < 0.5? 1 : 0);
-    }
+    setRandomGenes(ThreadLocalRandom.current());
+  }
+  
+  /**
+   * setRandomGenes with a provided source of randomness
+   * @param random
+   *   (Random) the source of randomness
+   */
+  public void setRandomGenes(Random random) {
+    setRandomGenes(genes, 0, numberOfGenes, random);
+    sumsValid = false;
+  }
+  
+  /**
+   * setRandomGenes for a Chromosome stored as a slice of a gene word array, shared by Chromosome and PackedPopulation
+   * @param genes
+   *   (long[]) the gene words
+   * @param offset
+   *   (int) the index of the Chromosome's first word
+   * @param numberOfGenes
+   *   (int) the number of genes of the Chromosome
+   * @param random
+   *   (Random) the source of randomness
+   */
+  static void setRandomGenes(long[] genes, int offset, int numberOfGenes, Random random) {
+    int wordCount = wordCount(numberOfGenes);
+    
+    // Each bit of a random long is 1 (included) or 0 (not included) with a 50% chance, so we fill whole gene words at once
+    for (int w=0; w<wordCount; w++)
+      genes[offset + w] = random.nextLong();
+    
+    // Clear the unused bits of the last word
+    genes[offset + wordCount - 1] &= -1L >>> -numberOfGenes;
   }
   
   /**
@@ -217,7 +530,7 @@ public class Chromosome implements Comparable<Chromosome> {
    *   (int) the gene value (0 or 1) at the specified index
    */
   public int getGene(int index) {
-    return genes[index];
+    return (int) (genes[index >>> 6] >>> index) & 1;
   }
   
   /**
@@ -225,10 +538,26 @@ public class Chromosome implements Comparable<Chromosome> {
    * @param index
    *   (int) the gene index that will be modified
    * @param value
-   *   (int) the gene value that will be set
+   *   (int) the gene value that will be set. 1 includes the related Item, any other value excludes it
    */
   public void setGene(int index, int value) {
-    genes[index] = value;
+    if (value == 1)
+      genes[index >>> 6] |= 1L << index;
+    else
+      genes[index >>> 6] &= ~(1L << index);
+    sumsValid = false;
+  }
+  
+  /**
+   * Counts the genes with a value of 1 (the number of Items included in the Chromosome) with a popcount of each gene word
+   * @return
+   *   (int) the number of genes set to 1
+   */
+  public int countIncludedGenes() {
+    int count = 0;
+    for (long word : genes)
+      count += Long.bitCount(word);
+    return count;
   }
   
   /**
@@ -252,12 +581,12 @@ public class Chromosome implements Comparable<Chromosome> {
   }
   
   /**
-   * Getter for the number of genes in the Chromosome (genes.length)
+   * Getter for the number of genes in the Chromosome
    * @return
-   *   (int) the number of genes that are in the Chromosome (genes.length)
+   *   (int) the number of genes that are in the Chromosome
    */
   public int geneCount() {
-    return genes.length;
+    return numberOfGenes;
   }
   
   /**
@@ -280,19 +609,19 @@ public class Chromosome implements Comparable<Chromosome> {
    */
   @Override
   public String toString() {
-    // We will add all information to this string then print and return it
-    String returnString = "";
+    // We will add all information to this builder then return it. Each gene takes 2 characters
+    StringBuilder returnString = new StringBuilder(32 + 2 * this.geneCount());
     
     // Add the fitnessScore to the returnString. Also add a header for the list of genes values
-    returnString += "Fitness score: " + fitnessScore + " Genes: ";
+    returnString.append("Fitness score: ").append(fitnessScore).append(" Genes: ");
     
     // Iterate through each gene and add it to the returnString
     for (int i=0; i<this.geneCount(); i++) {
-      returnString += genes[i] + " ";
+      returnString.append(getGene(i)).append(' ');
     }
     
     // Return the string
-    return returnString;
+    return returnString.toString();
   }
   
   /**
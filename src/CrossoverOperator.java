@@ -0,0 +1,65 @@
+import java.util.Random;
+
+/**
+ * A crossover method: writes two children of two parents. Operators are resolved once per run, by name with CrossoverOperators.get or by creating one, instead of comparing the name of the method for every pair of parents.
+ * Operators work on Chromosomes stored as slices of gene word arrays, so the same operator writes the children of both a Population (into new Chromosomes) and a PackedPopulation (into preallocated slots). The unused bits of the parents' last words are 0, and every operator keeps the unused bits of the children's last words 0.
+ *
+ * @author willj
+ */
+public interface CrossoverOperator {
+  /**
+   * Writes two children of two parents. The slices of the children must not overlap the slices of the parents
+   * @param parent1
+   *   (long[]) the gene words of the first parent
+   * @param parent1Offset
+   *   (int) the index of the first parent's first word
+   * @param parent2
+   *   (long[]) the gene words of the second parent
+   * @param parent2Offset
+   *   (int) the index of the second parent's first word
+   * @param child1
+   *   (long[]) the gene words of the first child
+   * @param child1Offset
+   *   (int) the index of the first child's first word
+   * @param child2
+   *   (long[]) the gene words of the second child
+   * @param child2Offset
+   *   (int) the index of the second child's first word
+   * @param numberOfGenes
+   *   (int) the number of genes of each Chromosome
+   * @param random
+   *   (Random) the source of randomness, for operators that need it
+   */
+  void crossover(long[] parent1, int parent1Offset, long[] parent2, int parent2Offset, long[] child1, int child1Offset, long[] child2, int child2Offset, int numberOfGenes, Random random);
+
+  /**
+   * Returns the name of the operator, for example "singlePointCrossover"
+   * @return
+   *   (String) the name the operator is registered under in CrossoverOperators
+   */
+  String getName();
+
+  /**
+   * Writes two child Chromosomes of two parent Chromosomes
+   * @param parent1
+   *   (Chromosome) the first parent
+   * @param parent2
+   *   (Chromosome) the second parent
+   * @param child1
+   *   (Chromosome) receives the genes of the first child. Its fitnessScore must be calculated again
+   * @param child2
+   *   (Chromosome) receives the genes of the second child. Its fitnessScore must be calculated again
+   * @param random
+   *   (Random) the source of randomness, for operators that need it
+   */
+  default void crossover(Chromosome parent1, Chromosome parent2, Chromosome child1, Chromosome child2, Random random) {
+    int numberOfGenes = child1.geneCount();
+    // If any Chromosome does not have the same number of genes throw illegal argument exception
+    if (parent1.geneCount() != numberOfGenes || parent2.geneCount() != numberOfGenes || child2.geneCount() != numberOfGenes)
+      throw new IllegalArgumentException("Parents and children should have equal geneCount.");
+
+    crossover(parent1.genes, 0, parent2.genes, 0, child1.genes, 0, child2.genes, 0, numberOfGenes, random);
+    child1.sumsValid = false;
+    child2.sumsValid = false;
+  }
+}
@@ -0,0 +1,226 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * The registry of CrossoverOperators by name, and the built-in operators:
+ *   singlePointCrossover, twoPointCrossover and threePointCrossover: the genes are cut into 2, 3 or 4 segments of equal length, taken alternately from each parent (see Chromosome.singlePointCrossover)
+ *   kPointCrossover: the genes are cut at K_POINT_DEFAULT random points (or any number, see KPointCrossover)
+ *   randomCrossover: each gene of each child is copied from a randomly chosen parent (see Chromosome.randomCrossover)
+ *   uniformCrossover: each gene is copied from a randomly chosen parent into the first child and from the other parent into the second child
+ * Every operator builds one mask per gene word that selects the genes of the first parent, so a word of both children costs a few bitwise operations whatever the number of genes. Except for randomCrossover, whose children each have their own random masks, the second child is the complement of the first: it gets the genes the first child did not. For the point crossovers that is the same as crossing over with the parent order reversed.
+ * More operators can be added with register, for example to run a new crossover method from GeneticAlgorithm by name.
+ *
+ * @author willj
+ */
+public class CrossoverOperators {
+  // The number of cut points of the registered kPointCrossover
+  public static final int K_POINT_DEFAULT = 4;
+
+  // Creates a new operator for each name. A supplier rather than an instance, so that an operator with state is never shared between runs. Synchronized since operators may be resolved from several threads, such as Islands
+  static final Map<String, Supplier<CrossoverOperator>> registry = new LinkedHashMap<String, Supplier<CrossoverOperator>>();
+
+  static {
+    register("singlePointCrossover", () -> new PointCrossover("singlePointCrossover", 2));
+    register("twoPointCrossover", () -> new PointCrossover("twoPointCrossover", 3));
+    register("threePointCrossover", () -> new PointCrossover("threePointCrossover", 4));
+    register("kPointCrossover", () -> new KPointCrossover(K_POINT_DEFAULT));
+    register("randomCrossover", () -> new RandomCrossover());
+    register("uniformCrossover", () -> new UniformCrossover());
+  }
+
+  /**
+   * Adds an operator to the registry, or replaces the operator registered under the same name
+   * @param name
+   *   (String) the name that get resolves to the operator
+   * @param supplier
+   *   (Supplier) creates the operator
+   */
+  public static void register(String name, Supplier<CrossoverOperator> supplier) {
+    synchronized (registry) {
+      registry.put(name, supplier);
+    }
+  }
+
+  /**
+   * Resolves the name of a crossover method to its operator. Resolve once per run and keep the operator
+   * @param name
+   *   (String) the name of the crossover method, for example "singlePointCrossover"
+   * @return
+   *   (CrossoverOperator) the operator
+   */
+  public static CrossoverOperator get(String name) {
+    Supplier<CrossoverOperator> supplier;
+    synchronized (registry) {
+      supplier = registry.get(name);
+      if (supplier == null)
+        throw new IllegalArgumentException("Valid crossoverMethods are: " + String.join(", ", registry.keySet()));
+    }
+    return supplier.get();
+  }
+
+  /**
+   * Writes both children from one mask per word: the first child gets the genes of parent1 where the mask is 1 and of parent2 where it is 0, the second child the opposite
+   */
+  static void maskCrossover(long[] parent1, int parent1Offset, long[] parent2, int parent2Offset, long[] child1, int child1Offset, long[] child2, int child2Offset, int w, long mask) {
+    long gene1 = parent1[parent1Offset + w];
+    long gene2 = parent2[parent2Offset + w];
+    child1[child1Offset + w] = (gene1 & mask) | (gene2 & ~mask);
+    child2[child2Offset + w] = (gene2 & mask) | (gene1 & ~mask);
+  }
+
+  /**
+   * Returns the mask of the genes [from, to) that fall into gene word w
+   * @param from
+   *   (int) the first gene of the range
+   * @param to
+   *   (int) the gene after the last gene of the range
+   * @param w
+   *   (int) the index of the word
+   * @return
+   *   (long) the bits of the word that are in the range
+   */
+  static long rangeMask(int from, int to, int w) {
+    int low = Math.max(from - (w << 6), 0);
+    int high = Math.min(to - (w << 6), 64);
+    if (low>=high)
+      return 0;
+    return (high == 64 ? -1L : (1L << high) - 1) & (-1L << low);
+  }
+
+  /**
+   * Cuts the genes into segments of equal length (the last one takes the remainder) and copies them alternately from each parent, starting with parent1 for the first child and with parent2 for the second. Like Chromosome.singlePointCrossover (2 segments), twoPointCrossover (3) and threePointCrossover (4)
+   */
+  public static class PointCrossover implements CrossoverOperator {
+    final String name;
+    final int segments;
+
+    /**
+     * Constructor
+     * @param name
+     *   (String) the name of the operator
+     * @param segments
+     *   (int) the number of segments, one more than the number of cut points. At least 2
+     */
+    public PointCrossover(String name, int segments) {
+      if (segments<2)
+        throw new IllegalArgumentException("There must be at least 2 segments.");
+      this.name = name;
+      this.segments = segments;
+    }
+
+    @Override
+    public void crossover(long[] parent1, int parent1Offset, long[] parent2, int parent2Offset, long[] child1, int child1Offset, long[] child2, int child2Offset, int numberOfGenes, Random random) {
+      int segmentLength = numberOfGenes / segments;
+      int wordCount = Chromosome.wordCount(numberOfGenes);
+      for (int w=0; w<wordCount; w++) {
+        // The first child takes the even segments from parent1
+        long mask = 0;
+        for (int s=0; s<segments; s+=2)
+          mask |= rangeMask(segmentLength * s, s == segments - 1 ? numberOfGenes : segmentLength * (s + 1), w);
+        maskCrossover(parent1, parent1Offset, parent2, parent2Offset, child1, child1Offset, child2, child2Offset, w, mask);
+      }
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+
+  /**
+   * Cuts the genes at k distinct random points and copies the segments alternately from each parent. The cut points are drawn with Floyd's sampling, as Selector draws tournaments without replacement, so every set of k distinct cut points is equally likely, and are then sorted
+   */
+  public static class KPointCrossover implements CrossoverOperator {
+    final int k;
+
+    // The cut points of the current crossover. Reused, so a crossover allocates nothing (operators are not shared between runs, see the registry)
+    final int[] cuts;
+
+    /**
+     * Constructor
+     * @param k
+     *   (int) the number of cut points. At least 1, and less than the number of genes of the Chromosomes it crosses over
+     */
+    public KPointCrossover(int k) {
+      if (k<1)
+        throw new IllegalArgumentException("k must be at least 1.");
+      this.k = k;
+      this.cuts = new int[k];
+    }
+
+    @Override
+    public void crossover(long[] parent1, int parent1Offset, long[] parent2, int parent2Offset, long[] child1, int child1Offset, long[] child2, int child2Offset, int numberOfGenes, Random random) {
+      if (k>=numberOfGenes)
+        throw new IllegalArgumentException("k must be less than the number of genes.");
+
+      // The cut points are genes 1 to numberOfGenes-1, a cut at c starting a segment at gene c. Floyd's sampling: draw from [1, numberOfGenes-k+i], and if that cut was already drawn take numberOfGenes-k+i instead, which cannot have been drawn yet
+      for (int i=0; i<k; i++) {
+        int bound = numberOfGenes - k + i;
+        int cut = 1 + random.nextInt(bound);
+        for (int j=0; j<i; j++)
+          if (cuts[j] == cut) {
+            cut = bound;
+            break;
+          }
+        cuts[i] = cut;
+      }
+      Arrays.sort(cuts);
+
+      int wordCount = Chromosome.wordCount(numberOfGenes);
+      int nextCut = 0;
+      boolean fromParent1 = true;
+      for (int w=0; w<wordCount; w++) {
+        long mask = fromParent1 ? -1L : 0;
+        // Each cut in this word switches the parent of the genes from the cut on
+        while (nextCut<k && cuts[nextCut] < (w + 1) << 6) {
+          mask ^= -1L << (cuts[nextCut] & 63);
+          fromParent1 = !fromParent1;
+          nextCut++;
+        }
+        maskCrossover(parent1, parent1Offset, parent2, parent2Offset, child1, child1Offset, child2, child2Offset, w, mask);
+      }
+    }
+
+    @Override
+    public String getName() {
+      return "kPointCrossover";
+    }
+  }
+
+  /**
+   * Copies each gene of each child from a randomly chosen parent, with a new random mask per word for each child. Draws the same random numbers as calling Chromosome.randomCrossover for each child, so runs with a seeded RandomStream give the same children as before operators were added
+   */
+  public static class RandomCrossover implements CrossoverOperator {
+    @Override
+    public void crossover(long[] parent1, int parent1Offset, long[] parent2, int parent2Offset, long[] child1, int child1Offset, long[] child2, int child2Offset, int numberOfGenes, Random random) {
+      int wordCount = Chromosome.wordCount(numberOfGenes);
+      Chromosome.randomCrossover(parent1, parent1Offset, parent2, parent2Offset, child1, child1Offset, wordCount, random);
+      Chromosome.randomCrossover(parent2, parent2Offset, parent1, parent1Offset, child2, child2Offset, wordCount, random);
+    }
+
+    @Override
+    public String getName() {
+      return "randomCrossover";
+    }
+  }
+
+  /**
+   * Uniform crossover: one random mask per word chooses the parent of each gene of the first child, and the second child gets the genes of the other parent
+   */
+  public static class UniformCrossover implements CrossoverOperator {
+    @Override
+    public void crossover(long[] parent1, int parent1Offset, long[] parent2, int parent2Offset, long[] child1, int child1Offset, long[] child2, int child2Offset, int numberOfGenes, Random random) {
+      int wordCount = Chromosome.wordCount(numberOfGenes);
+      for (int w=0; w<wordCount; w++)
+        maskCrossover(parent1, parent1Offset, parent2, parent2Offset, child1, child1Offset, child2, child2Offset, w, random.nextLong());
+    }
+
+    @Override
+    public String getName() {
+      return "uniformCrossover";
+    }
+  }
+}
@@ -47,47 +47,16 @@ public class Driver {
   }
   
   
-  // O(2^n)
-  // 1,048,576 operations
+  // O(2^(n/2) * n) with meet in the middle, O(2^n) with brute force up to BruteForceSolver.MAX_BRUTE_FORCE_ITEMS Items, split across all cores
   public int getPerfectScore() {
     Genotype genotype = makeChapter4();
     
-    int maxScore = 0;
-    
-    for (int i = 0; i < 2; i++)
-      for (int j = 0; j < 2; j++)
-        for (int k = 0; k < 2; k++)
-          for (int l = 0; l < 2; l++)
-            for (int m = 0; m < 2; m++)
-              for (int n = 0; n < 2; n++)
-                for (int o = 0; o < 2; o++)
-                  for (int p = 0; p < 2; p++)
-                    for (int q = 0; q < 2; q++)
-                      for (int r = 0; r < 2; r++)
-                        for (int s = 0; s < 2; s++)
-                          for (int t = 0; t < 2; t++)
-                            for (int u = 0; u < 2; u++)
-                              for (int v = 0; v < 2; v++)
-                                for (int w = 0; w < 2; w++)
-                                  for (int x = 0; x < 2; x++)
-                                    for (int y = 0; y < 2; y++)
-                                      for (int z = 0; z < 2; z++)
-                                        for (int a = 0; a < 2; a++)
-                                          for (int b = 0; b < 2; b++) {
-                                            int[] bitstring = new int[] {i, j,  k,  l,  m,  n,  o,  p,  q,  r,  s,  t,  u,  v,  w,  x,  y,  z,  a,  b};
-                                            Chromosome c = new Chromosome(bitstring);
-                                            int score = genotype.calculateFitness(c);
-                                            if (score > maxScore)
-                                              maxScore = score;
-                                          }
-    return maxScore;
+    return new BruteForceSolver(genotype).solve().getFitnessScore();
   }
   
   
   public Genotype makeChapter4() {
-    Genotype Chapter4 = new Genotype(0.5, 0.5);
-
-    Chapter4.setIdealAssignmentTime(120);
+    Genotype Chapter4 = new Genotype(120, 0.5, 0.5);
     
     Chapter4.add(1,1,12);
     Chapter4.add(2,1,11);
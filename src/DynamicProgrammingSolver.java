@@ -0,0 +1,231 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the Chromosome with the highest possible fitnessScore of a Genotype with dynamic programming over the total cost. Unlike BruteForceSolver it scales to thousands of Items, as long as the range of possible total costs is not too large.
+ * For a fixed total cost the fitnessScore only grows with the total value (or shrinks, if the value weight is negative), since the cost part of the fitness function depends only on the total cost. So the table holds the best total value of a subset of the Items seen so far for each exact total cost, and after the last Item every total cost is scored with Genotype.scoreFromSums, which also handles the idealTotalCost.
+ * The table is one row of ints that is swept once per Item. Each sweep reads the previous row and writes the next one into a second buffer, so the cost range can be split across the threads of a ForkJoinPool. To return the Chromosome itself, solve() also keeps one bit per Item and total cost that records whether the Item was taken, packed 64 to a long.
+ *
+ * @author willj
+ */
+public class DynamicProgrammingSolver {
+  // The largest number of total costs the table can hold. Costs must be scaled down if their sums span more than this
+  public static final int MAX_COST_RANGE = 1 << 27;
+
+  // The smallest cost range that is swept in parallel, and the number of costs each task sweeps. Smaller sweeps are faster on one thread
+  static final int PARALLEL_THRESHOLD = 1 << 14;
+
+  // The largest number of words the reconstruction table of solve can have: the largest array most JVMs allocate. Below it every index item * wordsPerItem + (c >>> 6) also fits in an int
+  static final int MAX_TAKEN_WORDS = Integer.MAX_VALUE - 8;
+
+  // Marks a total cost that no subset of the Items seen so far adds up to
+  static final int UNREACHABLE = Integer.MIN_VALUE;
+
+  // The Genotype to solve
+  Genotype genotype;
+
+  // The pool whose threads sweep the table
+  ForkJoinPool pool;
+
+  // The values and costs of the Items. Values are multiplied by the sign of the value weight, so the table always maximizes
+  int numberOfItems;
+  int[] values;
+  int[] costs;
+
+  // Table index 0 is the lowest possible total cost (the sum of the negative costs), and there are costRange possible total costs
+  int minTotalCost;
+  int costRange;
+
+  /**
+   * Constructor for when the pool is provided
+   * @param genotype
+   *   (Genotype) the Genotype to solve. Must have at least 4 Items, and its total costs must span at most MAX_COST_RANGE values
+   * @param pool
+   *   (ForkJoinPool) the pool whose threads sweep the table
+   */
+  public DynamicProgrammingSolver(Genotype genotype, ForkJoinPool pool) {
+    if (genotype.genesCount()<4)
+      throw new IllegalArgumentException("There must be at least 4 Items in the Genotype.");
+
+    this.genotype = genotype;
+    this.pool = pool;
+    this.numberOfItems = genotype.genesCount();
+    this.values = new int[numberOfItems];
+    this.costs = new int[numberOfItems];
+
+    int sign = genotype.getValueScoreWeight()<0 ? -1 : 1;
+    long negativeCosts = 0;
+    long positiveCosts = 0;
+    for (int i=0; i<numberOfItems; i++) {
+      values[i] = sign * genotype.getValue(i);
+      costs[i] = genotype.getCost(i);
+      if (costs[i]<0)
+        negativeCosts += costs[i];
+      else
+        positiveCosts += costs[i];
+    }
+
+    if (positiveCosts - negativeCosts + 1 > MAX_COST_RANGE)
+      throw new IllegalArgumentException("The total costs of the Items span more than " + MAX_COST_RANGE + " values.");
+
+    this.minTotalCost = (int) negativeCosts;
+    this.costRange = (int) (positiveCosts - negativeCosts + 1);
+  }
+
+  /**
+   * Constructor for when no pool is provided. Uses the common ForkJoinPool
+   * @param genotype
+   *   (Genotype) the Genotype to solve. Must have at least 4 Items, and its total costs must span at most MAX_COST_RANGE values
+   */
+  public DynamicProgrammingSolver(Genotype genotype) {
+    this(genotype, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Calculates the highest possible fitnessScore without reconstructing the Chromosome. Needs only the two table rows, O(costRange) memory
+   * @return
+   *   (int) the highest fitnessScore of any subset of the Items
+   */
+  public int bestScore() {
+    int[] table = sweep(null);
+    int c = bestCost(table);
+    return genotype.scoreFromSums(Genotype.packSums(unsign(table[c]), minTotalCost + c));
+  }
+
+  /**
+   * Finds a Chromosome with the highest possible fitnessScore. Keeps one bit per Item and total cost to reconstruct it, O(numberOfItems * costRange / 8) bytes. Throws an IllegalArgumentException if that table is larger than an array or than the maximum heap size, in which case bestScore() still finds the highest fitnessScore
+   * @return
+   *   (Chromosome) an optimal Chromosome, scored with Genotype.calculateFitness
+   */
+  public Chromosome solve() {
+    int wordsPerItem = Chromosome.wordCount(costRange);
+    long words = (long) numberOfItems * wordsPerItem;
+    if (words>MAX_TAKEN_WORDS)
+      throw new IllegalArgumentException("Reconstructing a Chromosome of " + numberOfItems + " Items with costs spanning " + costRange + " values needs " + words + " words, more than an array can hold. Use bestScore(), which needs O(costRange) memory.");
+    // The table and the two rows of the sweep must fit in the largest heap the JVM may use
+    long bytes = 8 * words + 8L * costRange;
+    if (bytes>Runtime.getRuntime().maxMemory())
+      throw new IllegalArgumentException("Reconstructing a Chromosome of " + numberOfItems + " Items with costs spanning " + costRange + " values needs " + bytes + " bytes, more than the maximum heap size. Use bestScore(), which needs O(costRange) memory.");
+    long[] taken = new long[(int) words];
+    int[] table = sweep(taken);
+
+    // Walk back from the best total cost. If Item i was taken at cost c the subset before it had cost c - cost[i]
+    Chromosome chromosome = new Chromosome(numberOfItems);
+    int c = bestCost(table);
+    for (int i=numberOfItems-1; i>=0; i--) {
+      if ((taken[i * wordsPerItem + (c >>> 6)] & (1L << c)) != 0) {
+        chromosome.setGene(i, 1);
+        c -= costs[i];
+      }
+    }
+
+    chromosome.setFitnessScore(genotype.calculateFitness(chromosome));
+    return chromosome;
+  }
+
+  /**
+   * Fills the table with the best (signed) total value for each total cost, one Item at a time
+   * @param taken
+   *   (long[]) if not null, receives a bit for each Item and total cost that is 1 when the best subset with that cost takes the Item
+   * @return
+   *   (int[]) the final table row, UNREACHABLE for total costs that no subset adds up to
+   */
+  int[] sweep(long[] taken) {
+    int[] previous = new int[costRange];
+    int[] next = new int[costRange];
+    Arrays.fill(previous, UNREACHABLE);
+    Arrays.fill(next, UNREACHABLE);
+    // The empty subset
+    previous[-minTotalCost] = 0;
+
+    // Only the total costs [low, high] can be reached with the Items seen so far. Both rows stay UNREACHABLE outside of it, so each sweep only has to cover the range reachable after the Item
+    int low = -minTotalCost;
+    int high = -minTotalCost;
+    for (int i=0; i<numberOfItems; i++) {
+      low += Math.min(0, costs[i]);
+      high += Math.max(0, costs[i]);
+
+      SweepTask task = new SweepTask(previous, next, taken, i, low, high + 1);
+      if (high + 1 - low>=PARALLEL_THRESHOLD)
+        pool.invoke(task);
+      else
+        task.compute();
+
+      int[] temp = previous;
+      previous = next;
+      next = temp;
+    }
+    return previous;
+  }
+
+  // Returns the table index of the reachable total cost with the highest fitnessScore. Of equal scores the lowest cost wins
+  int bestCost(int[] table) {
+    int best = -1;
+    int bestScore = 0;
+    for (int c=0; c<costRange; c++) {
+      if (table[c] == UNREACHABLE)
+        continue;
+      int score = genotype.scoreFromSums(Genotype.packSums(unsign(table[c]), minTotalCost + c));
+      if (best<0 || score>bestScore) {
+        best = c;
+        bestScore = score;
+      }
+    }
+    return best;
+  }
+
+  // Turns a table value back into a total value
+  int unsign(int value) {
+    return genotype.getValueScoreWeight()<0 ? -value : value;
+  }
+
+  /**
+   * Writes the table row after Item item for the total costs [from, to) from the row before it. Each total cost only reads the previous row, so the range can be split freely
+   */
+  class SweepTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final int[] previous;
+    final int[] next;
+    final long[] taken;
+    final int item;
+    final int from;
+    final int to;
+
+    SweepTask(int[] previous, int[] next, long[] taken, int item, int from, int to) {
+      this.previous = previous;
+      this.next = next;
+      this.taken = taken;
+      this.item = item;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      // Split on word boundaries so that two tasks never write the same word of taken
+      if (to - from > PARALLEL_THRESHOLD) {
+        int mid = ((from + to) >>> 1) & ~63;
+        invokeAll(new SweepTask(previous, next, taken, item, from, mid), new SweepTask(previous, next, taken, item, mid, to));
+        return;
+      }
+
+      int cost = costs[item];
+      int value = values[item];
+      int wordsPerItem = Chromosome.wordCount(costRange);
+      for (int c=from; c<to; c++) {
+        int without = previous[c];
+        int source = c - cost;
+        // Taking the Item is only better if the cost without it was reachable and the value is strictly higher
+        if (source>=0 && source<costRange && previous[source] != UNREACHABLE && (without == UNREACHABLE || previous[source] + value > without)) {
+          next[c] = previous[source] + value;
+          if (taken != null)
+            taken[item * wordsPerItem + (c >>> 6)] |= 1L << c;
+        } else {
+          next[c] = without;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,18 @@
+/**
+ * A Genetic Algorithm that is advanced one generation at a time, with a population that can be read between generations, so that a GeneticRun can drive it, publish its progress and stop it at any generation. Implemented by GenerationArena and SteadyStateEngine.
+ *
+ * @author willj
+ */
+public interface Evolver {
+  /**
+   * Advances the algorithm by one generation
+   */
+  void nextGeneration();
+
+  /**
+   * Returns the current population. Only valid until the next call of nextGeneration, which may overwrite it
+   * @return
+   *   (PackedPopulation) the current population
+   */
+  PackedPopulation getPopulation();
+}
@@ -0,0 +1,284 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs many independent trials of GeneticAlgorithm.algorithm1 in parallel and summarizes them with percentiles, to measure how the parameters of the algorithm affect its results.
+ * Every trial gets its own RandomStream split from the experiment seed in trial order, so an experiment gives the same generations, best scores and evaluations every time, however many threads run it. Only the wall times vary.
+ * Each thread records its trials into its own Histograms, which are merged when all trials are done. Each trial can also be streamed as a CSV row while the experiment runs.
+ * Every parameter is read from a --name=value argument, or else from the system property experiment.name, or else has a default. populationSize, crossoverRate and mutationRate take comma separated lists, and every combination of them is run, so parameter sweeps need no code edits:
+ * java ExperimentRunner --populationSize=100,500 --crossoverRate=0.6 --mutationRate=0.001,0.01 --trials=1000 --seed=1 --trialsOut=trials.csv
+ * With --metricsOut=metrics.jsonl the Metrics of the runs (see Metrics) are appended to a file as JSON lines while the experiment runs, every --metricsPeriod milliseconds.
+ *
+ * @author willj
+ */
+public class ExperimentRunner {
+  // The --name=value arguments
+  Map<String, String> arguments = new HashMap<String, String>();
+
+  // The number of threads the trials run on
+  int threads = Runtime.getRuntime().availableProcessors();
+
+  // The largest number of generations of a trial, so that trials that cannot reach the target still end
+  int maxGenerations = 100000;
+
+  // Whether trials run on a GenerationArena (algorithm1Arena) instead of algorithm1
+  boolean arena = false;
+
+  // If not null trials run on a SteadyStateEngine (algorithmSteadyState) with this replacement strategy, "worst" or "tournamentLoser", instead of algorithm1
+  String steadyState;
+
+  // Receives one CSV row per trial if not null. Written by all threads, so writes are synchronized on it
+  PrintWriter trialsOut;
+
+  public static void main(String[] args) throws IOException {
+    ExperimentRunner runner = new ExperimentRunner();
+    runner.parseArguments(args);
+    runner.run();
+  }
+
+  /**
+   * Reads the --name=value arguments
+   * @param args
+   *   (String[]) the command line arguments
+   */
+  void parseArguments(String[] args) {
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals<0)
+        throw new IllegalArgumentException("Arguments must look like --name=value: " + arg);
+      arguments.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+  }
+
+  /**
+   * Returns a parameter from the arguments, or else from the system property experiment.name, or else the default
+   * @param name
+   *   (String) the name of the parameter
+   * @param defaultValue
+   *   (String) the value if the parameter is not set
+   * @return
+   *   (String) the value of the parameter
+   */
+  String parameter(String name, String defaultValue) {
+    if (arguments.containsKey(name))
+      return arguments.get(name);
+    return System.getProperty("experiment." + name, defaultValue);
+  }
+
+  /**
+   * Runs the trials of every combination of the swept parameters and prints a summary of each
+   */
+  void run() throws IOException {
+    threads = Integer.parseInt(parameter("threads", String.valueOf(threads)));
+    maxGenerations = Integer.parseInt(parameter("maxGenerations", String.valueOf(maxGenerations)));
+    arena = Boolean.parseBoolean(parameter("arena", "false"));
+    steadyState = parameter("steadyState", null);
+    int trials = Integer.parseInt(parameter("trials", "1000"));
+    long seed = Long.parseLong(parameter("seed", "1"));
+    int selectBest = Integer.parseInt(parameter("selectBest", "3"));
+    int[] populationSizes = BenchmarkSuite.parseList(parameter("populationSize", "500"));
+    double[] crossoverRates = parseDoubles(parameter("crossoverRate", "0.6"));
+    double[] mutationRates = parseDoubles(parameter("mutationRate", "0.001"));
+
+    // The Genotype is random with a number of Items if items is set, otherwise it is the Genotype of Driver
+    int items = Integer.parseInt(parameter("items", "0"));
+    Genotype genotype = items>0 ? randomGenotype(items, seed) : new Driver().makeChapter4();
+
+    // The target defaults to 10 below the perfect score, like Driver.algorithm1AverageGenerations
+    int target;
+    if (parameter("target", null) != null)
+      target = Integer.parseInt(parameter("target", null));
+    else if (genotype.genesCount()<=BruteForceSolver.MAX_ITEMS)
+      target = new BruteForceSolver(genotype).solve().getFitnessScore() - 10;
+    else
+      target = new DynamicProgrammingSolver(genotype).bestScore() - 10;
+
+    String trialsPath = parameter("trialsOut", null);
+    if (trialsPath != null) {
+      trialsOut = new PrintWriter(Files.newBufferedWriter(Paths.get(trialsPath), StandardCharsets.UTF_8));
+      trialsOut.println("populationSize,crossoverRate,mutationRate,trial,generations,wallMicros,bestScore,evaluations");
+    }
+
+    // The metrics of all trials are appended to metricsOut as JSON lines every metricsPeriod milliseconds. The trials' Genotypes are copies, which share the metrics
+    String metricsPath = parameter("metricsOut", null);
+    JsonLinesExporter metricsOut = null;
+    if (metricsPath != null) {
+      metricsOut = new JsonLinesExporter(metricsPath);
+      genotype.setMetrics(new Metrics());
+      genotype.getMetrics().startExporting(metricsOut, Long.parseLong(parameter("metricsPeriod", "1000")), TimeUnit.MILLISECONDS);
+    }
+
+    System.out.println("Items: " + genotype.genesCount() + " Target: " + target + " Trials: " + trials + " Threads: " + threads + " Seed: " + seed);
+    try {
+      for (int populationSize : populationSizes) {
+        for (double crossoverRate : crossoverRates) {
+          for (double mutationRate : mutationRates) {
+            Statistics statistics = runTrials(genotype, populationSize, crossoverRate, mutationRate, selectBest, target, trials, seed);
+            System.out.println(String.format(Locale.ROOT, "populationSize=%d crossoverRate=%s mutationRate=%s reached target: %d/%d", populationSize, crossoverRate, mutationRate, statistics.reachedTarget, trials));
+            System.out.println("  generations:       " + statistics.generations);
+            System.out.println("  wall time (us):    " + statistics.wallMicros);
+            System.out.println("  best score:        " + statistics.bestScores);
+            System.out.println("  evaluations:       " + statistics.evaluations);
+          }
+        }
+      }
+    } finally {
+      if (trialsOut != null)
+        trialsOut.close();
+      if (metricsOut != null) {
+        // stopExporting rethrows a failed export, after which the file is still closed
+        try {
+          genotype.getMetrics().stopExporting();
+        } finally {
+          metricsOut.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Runs independent trials of one combination of parameters spread across the threads
+   * @param genotype
+   *   (Genotype) the Genotype to solve. Each trial scores with its own copy, so that it counts its own evaluations
+   * @param populationSize
+   *   (int) see GeneticAlgorithm.algorithm1
+   * @param crossoverRate
+   *   (double) see GeneticAlgorithm.algorithm1
+   * @param mutationRate
+   *   (double) see GeneticAlgorithm.algorithm1
+   * @param selectBest
+   *   (int) see GeneticAlgorithm.algorithm1
+   * @param target
+   *   (int) the bestScoreTarget of each trial
+   * @param trials
+   *   (int) the number of trials
+   * @param seed
+   *   (long) the seed that the trials' streams are split from
+   * @return
+   *   (Statistics) the merged statistics of all trials
+   */
+  public Statistics runTrials(Genotype genotype, int populationSize, double crossoverRate, double mutationRate, int selectBest, int target, int trials, long seed) {
+    // Split one stream per trial in trial order, so that trial i always gets the same stream
+    RandomStream root = new RandomStream(seed);
+    RandomStream[] streams = new RandomStream[trials];
+    for (int i=0; i<trials; i++)
+      streams[i] = root.split();
+
+    // Thread t runs the trials t, t + threads, t + 2*threads, ... into its own Statistics
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Statistics>> futures = new ArrayList<Future<Statistics>>();
+      for (int t=0; t<threads; t++) {
+        int first = t;
+        Callable<Statistics> task = () -> {
+          Statistics statistics = new Statistics();
+          for (int i=first; i<trials; i+=threads)
+            runTrial(genotype, populationSize, crossoverRate, mutationRate, selectBest, target, i, streams[i], statistics);
+          return statistics;
+        };
+        futures.add(executor.submit(task));
+      }
+
+      Statistics merged = new Statistics();
+      for (Future<Statistics> future : futures)
+        merged.merge(future.get());
+      return merged;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while running trials.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // Runs one trial and records it
+  void runTrial(Genotype genotype, int populationSize, double crossoverRate, double mutationRate, int selectBest, int target, int trial, RandomStream random, Statistics statistics) {
+    Genotype trialGenotype = new Genotype(genotype);
+    GeneticAlgorithm geneticAlgorithm = new GeneticAlgorithm(null, random);
+    geneticAlgorithm.setMaxGenerations(maxGenerations);
+
+    long start = System.nanoTime();
+    int generations;
+    if (steadyState != null)
+      generations = geneticAlgorithm.algorithmSteadyState(trialGenotype, populationSize, crossoverRate, mutationRate, steadyState, target, 0);
+    else if (arena)
+      generations = geneticAlgorithm.algorithm1Arena(trialGenotype, populationSize, crossoverRate, mutationRate, selectBest, target, 0);
+    else
+      generations = geneticAlgorithm.algorithm1(trialGenotype, populationSize, crossoverRate, mutationRate, selectBest, target, 0);
+    long wallMicros = (System.nanoTime() - start) / 1000;
+    int bestScore = geneticAlgorithm.getBest().getFitnessScore();
+    long evaluations = trialGenotype.getEvaluationCount();
+
+    statistics.generations.record(generations);
+    statistics.wallMicros.record(wallMicros);
+    statistics.bestScores.record(bestScore);
+    statistics.evaluations.record(evaluations);
+    if (bestScore>=target)
+      statistics.reachedTarget++;
+
+    if (trialsOut != null) {
+      synchronized (trialsOut) {
+        trialsOut.println(String.format(Locale.ROOT, "%d,%s,%s,%d,%d,%d,%d,%d", populationSize, crossoverRate, mutationRate, trial, generations, wallMicros, bestScore, evaluations));
+      }
+    }
+  }
+
+  // Parses a comma separated list of doubles
+  static double[] parseDoubles(String value) {
+    String[] parts = value.split(",");
+    double[] list = new double[parts.length];
+    for (int i=0; i<parts.length; i++)
+      list[i] = Double.parseDouble(parts[i].trim());
+    return list;
+  }
+
+  // Creates a Genotype of random Items from a seed
+  static Genotype randomGenotype(int items, long seed) {
+    RandomStream random = new RandomStream(seed);
+    Genotype genotype = new Genotype(0);
+    for (int i=0; i<items; i++)
+      genotype.add(i, 1 + random.nextInt(100), 1 + random.nextInt(50));
+    genotype.setIdealTotalCost(items * 10);
+    return genotype;
+  }
+
+  /**
+   * The Histograms of the trials of one combination of parameters
+   */
+  public static class Statistics {
+    public final Histogram generations = new Histogram();
+    public final Histogram wallMicros = new Histogram();
+    public final Histogram bestScores = new Histogram();
+    public final Histogram evaluations = new Histogram();
+
+    // The number of trials whose best score reached the target
+    public long reachedTarget;
+
+    // Adds the trials of other to these
+    public void merge(Statistics other) {
+      generations.merge(other.generations);
+      wallMicros.merge(other.wallMicros);
+      bestScores.merge(other.bestScores);
+      evaluations.merge(other.evaluations);
+      reachedTarget += other.reachedTarget;
+    }
+  }
+}
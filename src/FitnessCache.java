@@ -0,0 +1,289 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of fitness results keyed by a 64-bit hash of a Chromosome's gene words. As a run converges most of a Population are copies of a few Chromosomes, so with an expensive fitness function most evaluations can be answered from the cache.
+ * The cache stores the packed value and cost sums (see Genotype.packSums) rather than the fitnessScore, so it stays valid when the weights or the idealTotalCost of the Genotype change. Genotype clears it when its Items change.
+ * Entries are kept in open-addressing tables of primitive longs, so nothing is allocated per entry. The tables are split into segments, each with its own lock, so that threads scoring in parallel rarely wait for each other. When a segment is full an entry is evicted with the CLOCK algorithm: every hit sets an entry's referenced bit, and a hand sweeping the table clears referenced bits and evicts the first entry whose bit is already clear, which approximates evicting the least recently used entry.
+ * Two different gene words with the same 64-bit hash would share an entry. With n distinct Chromosomes the chance of that is about n^2 / 2^65, negligible for any realistic run.
+ *
+ * @author willj
+ */
+public class FitnessCache {
+  // Returned by get when the hash is not in the cache. Sums equal to MISSING (a value sum of Integer.MIN_VALUE and a cost sum of 0) are never cached
+  public static final long MISSING = Long.MIN_VALUE;
+
+  // The number of segments for caches large enough to split
+  static final int SEGMENTS = 16;
+
+  // The segments, chosen by the highest bits of the hash
+  Segment[] segments;
+  int segmentShift;
+
+  // Hit, miss and eviction counts. LongAdders so that counting does not contend between threads
+  LongAdder hits = new LongAdder();
+  LongAdder misses = new LongAdder();
+  LongAdder evictions = new LongAdder();
+
+  /**
+   * Constructor
+   * @param maxEntries
+   *   (int) the largest number of entries the cache holds. Must be at least 1
+   */
+  public FitnessCache(int maxEntries) {
+    if (maxEntries<1)
+      throw new IllegalArgumentException("maxEntries must be at least 1.");
+
+    int segmentCount = maxEntries>=SEGMENTS * 64 ? SEGMENTS : 1;
+    segments = new Segment[segmentCount];
+    segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+    // The first maxEntries % segmentCount segments hold one entry more, so that the segments add up to exactly maxEntries
+    for (int i=0; i<segmentCount; i++)
+      segments[i] = new Segment(maxEntries / segmentCount + (i<maxEntries % segmentCount ? 1 : 0));
+  }
+
+  /**
+   * Calculates the 64-bit hash of a Chromosome stored as a slice of a gene word array
+   * @param genes
+   *   (long[]) the bit-packed gene words
+   * @param offset
+   *   (int) the index of the Chromosome's first word
+   * @param wordCount
+   *   (int) the number of gene words of the Chromosome
+   * @return
+   *   (long) the hash. Never 0, which marks empty slots
+   */
+  public static long hash(long[] genes, int offset, int wordCount) {
+    long hash = wordCount * 0x9E3779B97F4A7C15L;
+    for (int w=0; w<wordCount; w++)
+      hash = Long.rotateLeft(hash ^ mix(genes[offset + w]), 27) * 0x9E3779B97F4A7C15L;
+    hash = mix(hash);
+    return hash == 0 ? 1 : hash;
+  }
+
+  // The finalizer of MurmurHash3, which spreads every input bit over every output bit
+  static long mix(long z) {
+    z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+    z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return z ^ (z >>> 33);
+  }
+
+  /**
+   * Looks up the sums of a hash
+   * @param hash
+   *   (long) the hash of the gene words, see hash
+   * @return
+   *   (long) the packed sums, or MISSING if the hash is not in the cache
+   */
+  public long get(long hash) {
+    long sums = segmentOf(hash).get(hash);
+    if (sums == MISSING)
+      misses.increment();
+    else
+      hits.increment();
+    return sums;
+  }
+
+  /**
+   * Stores the sums of a hash, evicting an entry if the segment is full
+   * @param hash
+   *   (long) the hash of the gene words, see hash
+   * @param sums
+   *   (long) the packed sums
+   */
+  public void put(long hash, long sums) {
+    if (sums == MISSING)
+      return;
+    if (segmentOf(hash).put(hash, sums))
+      evictions.increment();
+  }
+
+  // Returns the segment of a hash
+  Segment segmentOf(long hash) {
+    return segments[segments.length == 1 ? 0 : (int) (hash >>> segmentShift)];
+  }
+
+  /**
+   * Removes all entries. The metrics are kept
+   */
+  public void clear() {
+    for (Segment segment : segments)
+      segment.clear();
+  }
+
+  /**
+   * Returns the number of entries
+   * @return
+   *   (int) the number of entries in all segments
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments)
+      size += segment.size();
+    return size;
+  }
+
+  /**
+   * Getter for the number of lookups that found their hash
+   * @return
+   *   (long) the number of hits
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Getter for the number of lookups that did not find their hash
+   * @return
+   *   (long) the number of misses
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Getter for the number of entries evicted to make room for new ones
+   * @return
+   *   (long) the number of evictions
+   */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the share of lookups that found their hash
+   * @return
+   *   (double) hits / (hits + misses), or 0 before the first lookup
+   */
+  public double getHitRate() {
+    long hits = getHits();
+    long lookups = hits + getMisses();
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  /**
+   * Resets the hit, miss and eviction counts to 0
+   */
+  public void resetMetrics() {
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+  }
+
+  /**
+   * Returns the metrics on one line
+   * @return
+   *   (String) the size, hits, misses, hit rate and evictions
+   */
+  @Override
+  public String toString() {
+    return "FitnessCache size: " + size() + " hits: " + getHits() + " misses: " + getMisses() + " hit rate: " + getHitRate() + " evictions: " + getEvictions();
+  }
+
+  /**
+   * One lock's share of the cache: a linear probing table of hashes and sums with a referenced bit per slot for CLOCK eviction. The table is at most half full, so probes stay short
+   */
+  static class Segment {
+    final long[] hashes;
+    final long[] sums;
+    final boolean[] referenced;
+    final int mask;
+    final int maxEntries;
+    int size;
+    int hand;
+
+    Segment(int maxEntries) {
+      int capacity = Integer.highestOneBit(Math.max(2, maxEntries) * 2 - 1) << 1;
+      this.hashes = new long[capacity];
+      this.sums = new long[capacity];
+      this.referenced = new boolean[capacity];
+      this.mask = capacity - 1;
+      this.maxEntries = maxEntries;
+    }
+
+    synchronized long get(long hash) {
+      for (int slot = (int) hash & mask; hashes[slot] != 0; slot = (slot + 1) & mask) {
+        if (hashes[slot] == hash) {
+          referenced[slot] = true;
+          return sums[slot];
+        }
+      }
+      return MISSING;
+    }
+
+    // Returns true if an entry was evicted
+    synchronized boolean put(long hash, long value) {
+      int slot = (int) hash & mask;
+      for (; hashes[slot] != 0; slot = (slot + 1) & mask) {
+        if (hashes[slot] == hash) {
+          sums[slot] = value;
+          referenced[slot] = true;
+          return false;
+        }
+      }
+
+      boolean evicted = false;
+      if (size == maxEntries) {
+        evict();
+        evicted = true;
+        // The eviction may have moved entries, so the free slot is searched again
+        for (slot = (int) hash & mask; hashes[slot] != 0; slot = (slot + 1) & mask);
+      }
+
+      hashes[slot] = hash;
+      sums[slot] = value;
+      referenced[slot] = false;
+      size++;
+      return evicted;
+    }
+
+    // Advances the hand, giving each referenced entry a second chance, and removes the first entry that was not referenced since the hand last passed it
+    void evict() {
+      while (true) {
+        int slot = hand;
+        hand = (hand + 1) & mask;
+        if (hashes[slot] == 0)
+          continue;
+        if (referenced[slot]) {
+          referenced[slot] = false;
+          continue;
+        }
+        remove(slot);
+        return;
+      }
+    }
+
+    // Empties a slot and moves later entries of the same probe run back, so that no lookup stops early at the hole
+    void remove(int slot) {
+      int hole = slot;
+      int next = slot;
+      while (true) {
+        next = (next + 1) & mask;
+        if (hashes[next] == 0)
+          break;
+        // An entry can fill the hole unless its home slot lies cyclically in (hole, next]
+        int home = (int) hashes[next] & mask;
+        boolean homeBetween = hole<=next ? (hole<home && home<=next) : (hole<home || home<=next);
+        if (!homeBetween) {
+          hashes[hole] = hashes[next];
+          sums[hole] = sums[next];
+          referenced[hole] = referenced[next];
+          hole = next;
+        }
+      }
+      hashes[hole] = 0;
+      referenced[hole] = false;
+      size--;
+    }
+
+    synchronized void clear() {
+      java.util.Arrays.fill(hashes, 0);
+      java.util.Arrays.fill(referenced, false);
+      size = 0;
+      hand = 0;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+  }
+}
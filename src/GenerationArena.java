@@ -0,0 +1,234 @@
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs the generational algorithm of GeneticAlgorithm.nextGeneration on two preallocated PackedPopulations instead of creating new Population and Chromosome objects every generation.
+ * The current generation is read from one buffer while the next generation is written into the other, then the two are swapped. Children are written by crossover directly into their slot of the next buffer and survivors are copied word by word, so after the first generation a step allocates nothing and long runs cause no garbage collection.
+ * The selected indexes are kept in arrays that are also allocated once.
+ *
+ * @author willj
+ */
+public class GenerationArena implements Evolver {
+  // The generation that is read from and the one that is written to. Swapped after each step
+  PackedPopulation current;
+  PackedPopulation next;
+
+  // The Selector used for parents and survivors. It keeps its own reusable roulette wheel and tournament arrays
+  Selector selector;
+
+  // The crossover operators of the children of the first and second parents, resolved once when the arena is created
+  CrossoverOperator crossover1;
+  CrossoverOperator crossover2;
+
+  // The parameters of each generation. See GeneticAlgorithm.algorithm1 for details
+  int populationSize;
+  int numberOfChildren;
+  double mutationRate;
+  int selectBest;
+
+  // Index buffers for the selections of each generation
+  int[] parents1;
+  int[] parents2;
+  int[] best;
+  int[] survivors1;
+  int[] survivors2;
+
+  // The source of randomness of the selections, crossovers and mutations. If null the calling thread's ThreadLocalRandom is used
+  Random random;
+
+  /**
+   * Constructor. Allocates both generation buffers and the selection index buffers, and fills the current generation with random Chromosomes
+   * @param genotype
+   *   (Genotype) the Genotype whose Items the Chromosomes select from
+   * @param selector
+   *   (Selector) the Selector used for parents and survivors
+   * @param crossoverMethod1
+   *   (String) the crossover method for the children of the first parents, for example "singlePointCrossover"
+   * @param crossoverMethod2
+   *   (String) the crossover method for the children of the second parents, for example "randomCrossover"
+   * @param populationSize
+   *   (int) the number of Chromosomes of each generation
+   * @param crossoverRate
+   *   (double) the share of each generation that is made of children
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param selectBest
+   *   (int) the number of best Chromosomes that survive each generation unchanged
+   */
+  public GenerationArena(Genotype genotype, Selector selector, String crossoverMethod1, String crossoverMethod2, int populationSize, double crossoverRate, double mutationRate, int selectBest) {
+    this(genotype, selector, crossoverMethod1, crossoverMethod2, populationSize, crossoverRate, mutationRate, selectBest, null);
+  }
+
+  /**
+   * Constructor for when a source of randomness is provided. With a seeded RandomStream the same parameters always produce the same generations
+   * @param genotype
+   *   (Genotype) the Genotype whose Items the Chromosomes select from
+   * @param selector
+   *   (Selector) the Selector used for parents and survivors. Its source of randomness is set to random
+   * @param crossoverMethod1
+   *   (String) the crossover method for the children of the first parents, for example "singlePointCrossover"
+   * @param crossoverMethod2
+   *   (String) the crossover method for the children of the second parents, for example "randomCrossover"
+   * @param populationSize
+   *   (int) the number of Chromosomes of each generation
+   * @param crossoverRate
+   *   (double) the share of each generation that is made of children
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param selectBest
+   *   (int) the number of best Chromosomes that survive each generation unchanged
+   * @param random
+   *   (Random) the source of randomness, or null to use the calling thread's ThreadLocalRandom
+   */
+  public GenerationArena(Genotype genotype, Selector selector, String crossoverMethod1, String crossoverMethod2, int populationSize, double crossoverRate, double mutationRate, int selectBest, Random random) {
+    this(genotype, selector, CrossoverOperators.get(crossoverMethod1), CrossoverOperators.get(crossoverMethod2), populationSize, crossoverRate, mutationRate, selectBest, random);
+  }
+
+  /**
+   * Constructor for when the crossover operators are provided
+   * @param genotype
+   *   (Genotype) the Genotype whose Items the Chromosomes select from
+   * @param selector
+   *   (Selector) the Selector used for parents and survivors. Its source of randomness is set to random
+   * @param crossover1
+   *   (CrossoverOperator) the crossover operator for the children of the first parents
+   * @param crossover2
+   *   (CrossoverOperator) the crossover operator for the children of the second parents
+   * @param populationSize
+   *   (int) the number of Chromosomes of each generation
+   * @param crossoverRate
+   *   (double) the share of each generation that is made of children
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param selectBest
+   *   (int) the number of best Chromosomes that survive each generation unchanged
+   * @param random
+   *   (Random) the source of randomness, or null to use the calling thread's ThreadLocalRandom
+   */
+  public GenerationArena(Genotype genotype, Selector selector, CrossoverOperator crossover1, CrossoverOperator crossover2, int populationSize, double crossoverRate, double mutationRate, int selectBest, Random random) {
+    this.selector = selector;
+    this.crossover1 = crossover1;
+    this.crossover2 = crossover2;
+    this.populationSize = populationSize;
+    this.numberOfChildren = (int) (populationSize*crossoverRate);
+    this.mutationRate = mutationRate;
+    this.selectBest = selectBest;
+    this.random = random;
+    selector.setRandom(random);
+
+    current = new PackedPopulation(genotype, populationSize);
+    next = new PackedPopulation(genotype, populationSize);
+
+    int survivorsPerSelector = (populationSize - numberOfChildren - selectBest)/2;
+    parents1 = new int[numberOfChildren/2];
+    parents2 = new int[numberOfChildren/2];
+    best = new int[selectBest];
+    survivors1 = new int[survivorsPerSelector];
+    survivors2 = new int[survivorsPerSelector];
+
+    // Generate the source population (completely random genes)
+    current.generateRandom(populationSize, random());
+  }
+
+  // The arena's source of randomness, or the calling thread's ThreadLocalRandom if none was set
+  Random random() {
+    return random != null ? random : ThreadLocalRandom.current();
+  }
+
+  /**
+   * Writes the next generation into the spare buffer and swaps the buffers
+   */
+  public void step() {
+    Random random = random();
+
+    // Each phase is timed if the Genotype has metrics
+    Metrics metrics = current.genotype.metrics;
+    long start = 0;
+    long startBytes = 0;
+    long mark = 0;
+    if (metrics != null) {
+      start = System.nanoTime();
+      startBytes = Metrics.threadAllocatedBytes();
+      mark = start;
+    }
+
+    // Parents (roulette), best (ranked) and survivors (roulette and tournament) are all chosen from the current generation
+    selector.rolluletteWheelSelection(current, parents1.length, parents1);
+    selector.rolluletteWheelSelection(current, parents2.length, parents2);
+    selector.rankSelection(current, best.length, best);
+    selector.rolluletteWheelSelection(current, survivors1.length, survivors1);
+    selector.tournamentSelection(current, survivors2.length, survivors2);
+    if (metrics != null)
+      mark = metrics.lap(metrics.selectionNanos, mark);
+
+    next.clear();
+
+    // Survivors are copied into the next generation
+    for (int index : survivors1)
+      next.addCopy(current, index);
+    for (int index : survivors2)
+      next.addCopy(current, index);
+
+    // Children are written straight into their slots, two per pair of parents with the parent order reversed for the second
+    addChildren(parents1, crossover1, random);
+    addChildren(parents2, crossover2, random);
+    if (metrics != null)
+      mark = metrics.lap(metrics.crossoverNanos, mark);
+
+    // The children are scored in full, as one batch. Survivors keep the scores and sums they were copied with
+    next.evaluate(survivors1.length + survivors2.length, next.size());
+    if (metrics != null)
+      mark = metrics.lap(metrics.evaluationNanos, mark);
+
+    // Everything so far is mutated, which updates the scores from only the flipped genes. The best are added afterwards so that they survive unchanged
+    for (int i=0; i<next.size(); i++)
+      next.mutate(i, mutationRate, random);
+    if (metrics != null)
+      metrics.lap(metrics.mutationNanos, mark);
+    for (int index : best)
+      next.addCopy(current, index);
+
+    next.calculateStatistics();
+
+    // Swap the buffers. The old generation's buffer is overwritten by the next step
+    PackedPopulation temp = current;
+    current = next;
+    next = temp;
+
+    if (metrics != null)
+      metrics.endGeneration(start, startBytes);
+  }
+
+  /**
+   * Same as step, for Evolver
+   */
+  @Override
+  public void nextGeneration() {
+    step();
+  }
+
+  // Crosses over each pair of parents (parents[i], parents[i+1]) of the current generation into two children written straight into the next slots of the next generation
+  void addChildren(int[] parents, CrossoverOperator crossover, Random random) {
+    for (int i=0; i+1<parents.length; i+=2)
+      next.crossover(crossover, current, parents[i], parents[i+1], next.allocate(), next.allocate(), random);
+  }
+
+  /**
+   * Getter for the current generation
+   * @return
+   *   (PackedPopulation) the current generation. Its contents are overwritten two steps later
+   */
+  public PackedPopulation getCurrent() {
+    return current;
+  }
+
+  /**
+   * Same as getCurrent, for Evolver
+   * @return
+   *   (PackedPopulation) the current generation
+   */
+  @Override
+  public PackedPopulation getPopulation() {
+    return current;
+  }
+}
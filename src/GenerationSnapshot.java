@@ -0,0 +1,86 @@
+/**
+ * The state of a GeneticRun after one generation, as published to its listeners and subscribers: the best Chromosome found so far and the statistics of the current population.
+ * Snapshots are immutable and can be kept or handed to other threads. The best Chromosome is a copy that the run never changes, shared by consecutive snapshots until the best score improves, so a snapshot costs one small object per generation.
+ *
+ * @author willj
+ */
+public class GenerationSnapshot {
+  final int generation;
+  final long evaluations;
+  final long elapsedNanos;
+  final Chromosome best;
+  final int bestScore;
+  final int minScore;
+  final double averageScore;
+  final int generationsSinceImprovement;
+
+  /**
+   * Constructor
+   * @param generation
+   *   (int) the number of generations evolved, 0 for the source population
+   * @param evaluations
+   *   (long) the number of full fitness evaluations since the run started
+   * @param elapsedNanos
+   *   (long) the wall time since the run started, in nanoseconds
+   * @param best
+   *   (Chromosome) the best Chromosome found so far. Must not be changed afterwards
+   * @param minScore
+   *   (int) the lowest fitness score of the current population
+   * @param averageScore
+   *   (double) the average fitness score of the current population
+   * @param generationsSinceImprovement
+   *   (int) the number of generations since the best score last improved
+   */
+  public GenerationSnapshot(int generation, long evaluations, long elapsedNanos, Chromosome best, int minScore, double averageScore, int generationsSinceImprovement) {
+    this.generation = generation;
+    this.evaluations = evaluations;
+    this.elapsedNanos = elapsedNanos;
+    this.best = best;
+    this.bestScore = best.getFitnessScore();
+    this.minScore = minScore;
+    this.averageScore = averageScore;
+    this.generationsSinceImprovement = generationsSinceImprovement;
+  }
+
+  public int getGeneration() {
+    return generation;
+  }
+
+  public long getEvaluations() {
+    return evaluations;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Getter for the best Chromosome found so far
+   * @return
+   *   (Chromosome) the best Chromosome. Shared with other snapshots, so it must not be changed
+   */
+  public Chromosome getBest() {
+    return best;
+  }
+
+  public int getBestScore() {
+    return bestScore;
+  }
+
+  public int getMinScore() {
+    return minScore;
+  }
+
+  public double getAverageScore() {
+    return averageScore;
+  }
+
+  public int getGenerationsSinceImprovement() {
+    return generationsSinceImprovement;
+  }
+
+  @Override
+  public String toString() {
+    return "Generation " + generation + " best: " + bestScore + " average: " + averageScore + " min: " + minScore + " evaluations: " + evaluations + " elapsed (ms): " + elapsedNanos / 1000000;
+  }
+}
@@ -1,16 +1,83 @@
+import java.util.Random;
 
 // Time compexity: O(g(pg + pg + p)) with g the number of generations, p the population size and g the size of the individuals (number of genes)
 // Space complexity: O(p + 2pc + p-pc ) with p population size, c crossover rate, p - pc is survivors
 public class GeneticAlgorithm {
   
+  // Scores each generation's populations in parallel. If null fitness scores are calculated on the calling thread
+  PopulationEvaluator evaluator;
+  
+  // The source of randomness of each run (random genes, selection, crossover and mutation). If null each thread uses its ThreadLocalRandom. With a seeded RandomStream and the same parameters a run produces the same generations every time
+  Random random;
+  
+  // The largest number of generations a run evolves, so that a run with an unreachable bestScoreTarget still ends
+  int maxGenerations = Integer.MAX_VALUE;
+  
+  // The best Chromosome of the last generation of the last run
+  Chromosome best;
+  
+  // If not null algorithm1 and resumeAlgorithm1 save a Checkpoint of their population to this path every checkpointInterval generations
+  String checkpointPath;
+  int checkpointInterval;
+  
   public GeneticAlgorithm() {
     // Initialize
   }
   
+  public GeneticAlgorithm(PopulationEvaluator evaluator) {
+    this.evaluator = evaluator;
+  }
+  
+  public GeneticAlgorithm(PopulationEvaluator evaluator, Random random) {
+    this.evaluator = evaluator;
+    this.random = random;
+  }
+  
+  // Convenience constructor for a reproducible run on the calling thread
+  public GeneticAlgorithm(long seed) {
+    this(null, new RandomStream(seed));
+  }
+  
+  public Random getRandom() {
+    return random;
+  }
+  
+  public void setRandom(Random random) {
+    this.random = random;
+  }
+  
+  public int getMaxGenerations() {
+    return maxGenerations;
+  }
+  
+  public void setMaxGenerations(int maxGenerations) {
+    this.maxGenerations = maxGenerations;
+  }
+  
+  // The best Chromosome of the last generation of the last run, or null before the first run
+  public Chromosome getBest() {
+    return best;
+  }
+  
+  /**
+   * Makes algorithm1 and resumeAlgorithm1 save a Checkpoint of their population every interval generations, from which resumeAlgorithm1 continues the run after its JVM stopped. The Checkpoint holds the state of random if it is a RandomStream, so a resumed seeded run produces the same generations as one that was never stopped
+   * @param path
+   *   (String) the path of the checkpoint file, replaced by each save. null to stop saving checkpoints
+   * @param interval
+   *   (int) the number of generations between two checkpoints. At least 1
+   */
+  public void setCheckpoint(String path, int interval) {
+    if (path != null && interval<1)
+      throw new IllegalArgumentException("The checkpoint interval must be at least 1.");
+    this.checkpointPath = path;
+    this.checkpointInterval = interval;
+  }
+  
   public int algorithm1(Genotype genotype, int populationSize, double crossoverRate, double mutationRate, int selectBest, int bestScoreTarget, int printLevel) {
     
     // Generate first population (source population, completely random genes)
-    Population population = new Population(genotype);
+    Population population = new Population(genotype, evaluator);
+    population.setRandom(random);
     population.generateRandom(populationSize);
     
     if (printLevel>0) {
@@ -20,122 +87,274 @@ public class GeneticAlgorithm {
       System.out.println("Size: " + population.size());
     }
     
+    return evolve(population, 1, populationSize, crossoverRate, mutationRate, selectBest, bestScoreTarget, printLevel);
+  }
+  
+  /**
+   * Continues a run of algorithm1 from a Checkpoint saved by it (see setCheckpoint). The run's source of randomness is replaced by a RandomStream continuing from the state in the Checkpoint, if it holds one
+   * @param path
+   *   (String) the path of the checkpoint file
+   * @param genotype
+   *   (Genotype) the Genotype of the run. Must be the one the Checkpoint was saved with
+   * @return
+   *   (int) the number of generations evolved, including those before the Checkpoint. The other parameters and the limits are those of algorithm1
+   */
+  public int resumeAlgorithm1(String path, Genotype genotype, int populationSize, double crossoverRate, double mutationRate, int selectBest, int bestScoreTarget, int printLevel) {
+    Checkpoint checkpoint = Checkpoint.load(path);
+    long[] randomState = checkpoint.getRandomState();
+    if (randomState != null)
+      random = new RandomStream(randomState);
+    
+    Population population = checkpoint.toPopulation(genotype, evaluator);
+    population.setRandom(random);
+    
+    if (printLevel>0) {
+      System.out.println("Resumed from " + path + " after generation " + checkpoint.getGeneration() + ":");
+      System.out.println("Average score:" + population.getAverageScore()
+                       + " Best score: " + population.getBestScore());
+      System.out.println("Size: " + population.size());
+    }
+    
+    return evolve(population, (int) checkpoint.getGeneration() + 1, populationSize, crossoverRate, mutationRate, selectBest, bestScoreTarget, printLevel);
+  }
+  
+  // The generation loop of algorithm1 and resumeAlgorithm1, starting with generation number generation. Saves a Checkpoint after every checkpointInterval-th generation and returns the number of the last generation evolved
+  int evolve(Population population, int generation, int populationSize, double crossoverRate, double mutationRate, int selectBest, int bestScoreTarget, int printLevel) {
     Selector selector = new Selector();
+    selector.setRandom(random);
     
-    int generation = 1;
     int numberOfChildren = (int) (populationSize*crossoverRate);
     
-    while (population.getBestScore()<bestScoreTarget) {
+    // The crossover operators are resolved once for the whole run
+    CrossoverOperator crossover1 = CrossoverOperators.get("singlePointCrossover");
+    CrossoverOperator crossover2 = CrossoverOperators.get("randomCrossover");
+    
+    while (population.getBestScore()<bestScoreTarget && generation<=maxGenerations) {
       
       if (printLevel>0)
         System.out.println("GENERATION " + generation + " best: " + population.getBestScore());
       
-      // Parents 1 (roulette)
-      Population parents1 = new Population(genotype);
-      
-      parents1 = selector.rolluletteWheelSelection(population, (numberOfChildren/2));
-      
-      if (printLevel>0) {
-        System.out.println("  Parents1 (roulette):");
-        System.out.println("    Average score:" + parents1.getAverageScore()
-                        + " Best score: " + parents1.getBestScore()
-                        + " Size: " + parents1.size());
-      }
-      
-      // Parents 2 (Roulette)
-      Population parents2 = new Population(genotype);
-      parents2 = selector.rolluletteWheelSelection(population, numberOfChildren/2);
-      
-      if (printLevel>0) {
-        System.out.println("  Parents2 (roulette):");
-        System.out.println("    Average score:" + parents2.getAverageScore()
-                        + " Best score: " + parents2.getBestScore()
-                        + " Size: " + parents2.size());
-      }
-      
-      // Children 1 (singlePointCrossover)
-      Population children1 = new Population(genotype);
-      children1 = parents1.generateChildren("singlePointCrossover");
-      
-      if (printLevel>0) {
-        System.out.println("  Child population1 (single point crossover):");
-        System.out.println("    Average score:" + children1.getAverageScore()
-        + " Best score: " + children1.getBestScore()
-        + " Size: " + children1.size());
-      }
+      population = nextGeneration(population, selector, crossover1, crossover2, populationSize, numberOfChildren, mutationRate, selectBest, printLevel);
       
+      if (checkpointPath != null && generation % checkpointInterval == 0)
+        Checkpoint.save(checkpointPath, population, generation, random);
       
-      // Children 2 (randomCrossover)
-      Population children2 = new Population(genotype);
-      children2 = parents2.generateChildren("randomCrossover");
-      
-      if (printLevel>0) {
-        System.out.println("  Child population2 (random crossover):");
-        System.out.println("    Average score:" + children2.getAverageScore()
-                         + " Best score: " + children2.getBestScore()
-                         + " Size: " + children2.size());
-      }
-      
-      
-      // Survivors: Best (rankedSelection)
-      Population best = new Population(genotype);
-      best = selector.rankSelection(population, selectBest);
-      
-      if (printLevel>0) {
-        System.out.println("  Survivors " + selectBest + " best (ranked):");
-        System.out.println("    Average score:" + best.getAverageScore()
-                         + " Best score: " + best.getBestScore()
-                         + " Size: " + best.size());
-      }
-      
-      
-      // Survivors: (roulette selection)
-      Population survivors1 = new Population(genotype);
-      survivors1 = selector.rolluletteWheelSelection(population, (populationSize - numberOfChildren - selectBest)/2);
-      
-      if (printLevel>0) {
-        System.out.println("  Survivors (rouletteWheel):");
-        System.out.println("    Average score:" + survivors1.getAverageScore()
-                         + " Best score: " + survivors1.getBestScore()
-                         + " Size: " + survivors1.size());
-      }
+      generation++;
+    }
+    
+    best = population.getBest();
+    
+    if (printLevel>0) {
+      System.out.println("Best solution:");
+      population.getGenotype().printChromosomeGenotype(best);
+    }
+    return (generation-1);
+  }
+  
+  // Same algorithm and parameters as algorithm1, but the generations are kept in a GenerationArena, which reuses two preallocated buffers instead of allocating new Populations and Chromosomes every generation
+  public int algorithm1Arena(Genotype genotype, int populationSize, double crossoverRate, double mutationRate, int selectBest, int bestScoreTarget, int printLevel) {
+    
+    // Generate first population (source population, completely random genes)
+    GenerationArena arena = new GenerationArena(genotype, new Selector(), "singlePointCrossover", "randomCrossover", populationSize, crossoverRate, mutationRate, selectBest, random);
+    
+    if (printLevel>0) {
+      System.out.println("Source population:");
+      System.out.println("Average score:" + arena.getCurrent().getAverageScore()
+                       + " Best score: " + arena.getCurrent().getBestScore());
+      System.out.println("Size: " + arena.getCurrent().size());
+    }
+    
+    int generation = 1;
+    
+    while (arena.getCurrent().getBestScore()<bestScoreTarget && generation<=maxGenerations) {
       
-      // Survivors: (tournamentSelection)
-      Population survivors2 = new Population(genotype);
-      survivors2 = selector.tournamentSelection(population, (populationSize - numberOfChildren - selectBest)/2);
+      if (printLevel>0)
+        System.out.println("GENERATION " + generation + " best: " + arena.getCurrent().getBestScore());
       
-      if (printLevel>0) {
-        System.out.println("  Survivors (tournament):");
-        System.out.println("    Average score:" + survivors2.getAverageScore()
-                       + " Best score: " + survivors2.getBestScore()
-                       + " Size: " + survivors2.size());
-      }
+      arena.step();
       
-      // New generation
-      Population newGeneration = new Population(genotype);
-      newGeneration.add(survivors1);
-      newGeneration.add(survivors2);
-      newGeneration.add(children1);
-      newGeneration.add(children2);
-      newGeneration.mutate(mutationRate);
-      newGeneration.add(best);
+      generation++;
+    }
+    
+    best = arena.getCurrent().toChromosome(arena.getCurrent().getBestIndex());
+    
+    if (printLevel>0) {
+      System.out.println("Best solution:");
+      genotype.printChromosomeGenotype(best);
+    }
+    return (generation-1);
+  }
+  
+  // A steady-state run on a SteadyStateEngine: each step replaces up to two Chromosomes in place instead of building a new generation, see SteadyStateEngine. There is no selectBest, since a child only replaces a Chromosome that is not better than it. Returns the number of steps in generations, populationSize/2 steps (populationSize children) counting as one, so that it compares with algorithm1. maxGenerations is counted the same way
+  public int algorithmSteadyState(Genotype genotype, int populationSize, double crossoverRate, double mutationRate, String replacement, int bestScoreTarget, int printLevel) {
+    
+    // Generate first population (source population, completely random genes)
+    SteadyStateEngine engine = new SteadyStateEngine(genotype, new Selector(), CrossoverOperators.get("singlePointCrossover"), populationSize, crossoverRate, mutationRate, replacement, random);
+    
+    if (printLevel>0) {
+      System.out.println("Source population:");
+      System.out.println("Average score:" + engine.getPopulation().getAverageScore()
+                       + " Best score: " + engine.getPopulation().getBestScore());
+      System.out.println("Size: " + engine.getPopulation().size());
+    }
+    
+    int generation = 1;
+    
+    while (engine.getPopulation().getBestScore()<bestScoreTarget && generation<=maxGenerations) {
       
-      if (printLevel>0) {
-        System.out.println("  New generation:");
-        System.out.println("    Average score:" + newGeneration.getAverageScore()
-                         + " Best score: " + newGeneration.getBestScore()
-                         + " New generation size: " + newGeneration.size());
-      }
+      if (printLevel>0)
+        System.out.println("GENERATION " + generation + " best: " + engine.getPopulation().getBestScore());
       
-      population = newGeneration;
+      engine.nextGeneration();
       
       generation++;
     }
     
+    best = engine.getBest();
+    
     if (printLevel>0) {
       System.out.println("Best solution:");
-      genotype.printChromosomeGenotype(population.getBest());
+      genotype.printChromosomeGenotype(best);
     }
     return (generation-1);
   }
+  
+  // An anytime run of the algorithm of algorithm1 on a GenerationArena: the returned GeneticRun publishes a snapshot with the best Chromosome so far after every generation and stops at the first limit of budget or when it is cancelled. Start it with run() or GeneticRun.start(executor)
+  public GeneticRun algorithm1Run(Genotype genotype, int populationSize, double crossoverRate, double mutationRate, int selectBest, GeneticRun.Budget budget) {
+    GenerationArena arena = new GenerationArena(genotype, new Selector(), "singlePointCrossover", "randomCrossover", populationSize, crossoverRate, mutationRate, selectBest, random);
+    return new GeneticRun(arena, budget);
+  }
+  
+  // nextGeneration with the crossover methods given by name, see CrossoverOperators. Resolves the names on every call, so loops should resolve the operators once and call the CrossoverOperator version
+  public Population nextGeneration(Population population, Selector selector, String crossoverMethod1, String crossoverMethod2, int populationSize, int numberOfChildren, double mutationRate, int selectBest, int printLevel) {
+    return nextGeneration(population, selector, CrossoverOperators.get(crossoverMethod1), CrossoverOperators.get(crossoverMethod2), populationSize, numberOfChildren, mutationRate, selectBest, printLevel);
+  }
+  
+  // Produces the generation that follows population: parents are chosen with roulette selection and crossed over with crossover1 and crossover2, the selectBest best survive unchanged, and the remaining places are filled with roulette and tournament selection survivors. Everything except the selectBest best is mutated
+  public Population nextGeneration(Population population, Selector selector, CrossoverOperator crossover1, CrossoverOperator crossover2, int populationSize, int numberOfChildren, double mutationRate, int selectBest, int printLevel) {
+    Genotype genotype = population.getGenotype();
+    
+    // Each phase is timed if the Genotype has metrics. With printLevel>0 the printing is timed with the phase before it
+    Metrics metrics = genotype.getMetrics();
+    long start = 0;
+    long startBytes = 0;
+    long mark = 0;
+    if (metrics != null) {
+      start = System.nanoTime();
+      startBytes = Metrics.threadAllocatedBytes();
+      mark = start;
+    }
+    
+    // Parents 1 (roulette)
+    Population parents1 = new Population(genotype);
+    
+    parents1 = selector.rolluletteWheelSelection(population, (numberOfChildren/2));
+    
+    if (printLevel>0) {
+      System.out.println("  Parents1 (roulette):");
+      System.out.println("    Average score:" + parents1.getAverageScore()
+                      + " Best score: " + parents1.getBestScore()
+                      + " Size: " + parents1.size());
+    }
+    
+    // Parents 2 (Roulette)
+    Population parents2 = new Population(genotype);
+    parents2 = selector.rolluletteWheelSelection(population, numberOfChildren/2);
+    if (metrics != null)
+      mark = metrics.lap(metrics.selectionNanos, mark);
+    
+    if (printLevel>0) {
+      System.out.println("  Parents2 (roulette):");
+      System.out.println("    Average score:" + parents2.getAverageScore()
+                      + " Best score: " + parents2.getBestScore()
+                      + " Size: " + parents2.size());
+    }
+    
+    // Children 1 (crossover1) and Children 2 (crossover2). They are scored after both are generated, so that crossover and evaluation are timed apart
+    Population children1 = new Population(genotype);
+    children1 = parents1.generateUnscoredChildren(crossover1);
+    Population children2 = new Population(genotype);
+    children2 = parents2.generateUnscoredChildren(crossover2);
+    if (metrics != null)
+      mark = metrics.lap(metrics.crossoverNanos, mark);
+    
+    children1.setFitnessScores();
+    children2.setFitnessScores();
+    if (metrics != null)
+      mark = metrics.lap(metrics.evaluationNanos, mark);
+    
+    if (printLevel>0) {
+      System.out.println("  Child population1 (" + crossover1.getName() + "):");
+      System.out.println("    Average score:" + children1.getAverageScore()
+      + " Best score: " + children1.getBestScore()
+      + " Size: " + children1.size());
+    }
+    
+    if (printLevel>0) {
+      System.out.println("  Child population2 (" + crossover2.getName() + "):");
+      System.out.println("    Average score:" + children2.getAverageScore()
+                       + " Best score: " + children2.getBestScore()
+                       + " Size: " + children2.size());
+    }
+    
+    
+    // Survivors: Best (rankedSelection)
+    Population best = new Population(genotype);
+    best = selector.rankSelection(population, selectBest);
+    
+    if (printLevel>0) {
+      System.out.println("  Survivors " + selectBest + " best (ranked):");
+      System.out.println("    Average score:" + best.getAverageScore()
+                       + " Best score: " + best.getBestScore()
+                       + " Size: " + best.size());
+    }
+    
+    
+    // Survivors: (roulette selection)
+    Population survivors1 = new Population(genotype);
+    survivors1 = selector.rolluletteWheelSelection(population, (populationSize - numberOfChildren - selectBest)/2);
+    
+    if (printLevel>0) {
+      System.out.println("  Survivors (rouletteWheel):");
+      System.out.println("    Average score:" + survivors1.getAverageScore()
+                       + " Best score: " + survivors1.getBestScore()
+                       + " Size: " + survivors1.size());
+    }
+    
+    // Survivors: (tournamentSelection)
+    Population survivors2 = new Population(genotype);
+    survivors2 = selector.tournamentSelection(population, (populationSize - numberOfChildren - selectBest)/2);
+    if (metrics != null)
+      mark = metrics.lap(metrics.selectionNanos, mark);
+    
+    if (printLevel>0) {
+      System.out.println("  Survivors (tournament):");
+      System.out.println("    Average score:" + survivors2.getAverageScore()
+                     + " Best score: " + survivors2.getBestScore()
+                     + " Size: " + survivors2.size());
+    }
+    
+    // New generation
+    Population newGeneration = new Population(genotype, population.getEvaluator());
+    newGeneration.setRandom(population.random);
+    newGeneration.add(survivors1);
+    newGeneration.add(survivors2);
+    newGeneration.add(children1);
+    newGeneration.add(children2);
+    newGeneration.mutate(mutationRate);
+    newGeneration.add(best);
+    if (metrics != null) {
+      metrics.lap(metrics.mutationNanos, mark);
+      metrics.endGeneration(start, startBytes);
+    }
+    
+    if (printLevel>0) {
+      System.out.println("  New generation:");
+      System.out.println("    Average score:" + newGeneration.getAverageScore()
+                       + " Best score: " + newGeneration.getBestScore()
+                       + " New generation size: " + newGeneration.size());
+    }
+    
+    return newGeneration;
+  }
 }
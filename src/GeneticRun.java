@@ -0,0 +1,276 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An anytime run of a Genetic Algorithm: drives an Evolver one generation at a time and publishes a GenerationSnapshot after every generation, so a best-so-far answer is available at any moment instead of only when the run returns.
+ * A run stops at the first of: the best score reaching the target, a number of generations, a wall-clock time, a number of fitness evaluations, a number of generations without improvement (stagnation), or cancellation. The limits are set with a Budget. They are checked between generations, so a run overshoots a limit by at most one generation.
+ * Cancellation is cooperative: cancel() (or interrupting the thread of the run) stops the run before its next generation, and the best Chromosome found so far stays available from getBest() and the last snapshot.
+ * Snapshots are delivered synchronously to Listeners on the thread of the run, and asynchronously to Flow.Subscribers through a SubmissionPublisher. A subscriber that falls behind has snapshots dropped rather than slowing the run down, since the next snapshot always supersedes them.
+ *
+ * @author willj
+ */
+public class GeneticRun implements Runnable, Flow.Publisher<GenerationSnapshot> {
+  // The reasons a run stops, see getStopReason
+  public static final String STOP_TARGET = "target";
+  public static final String STOP_GENERATIONS = "generations";
+  public static final String STOP_TIME = "time";
+  public static final String STOP_EVALUATIONS = "evaluations";
+  public static final String STOP_STAGNATION = "stagnation";
+  public static final String STOP_CANCELLED = "cancelled";
+
+  // The algorithm and the limits of the run
+  Evolver evolver;
+  Budget budget;
+
+  // Called on the thread of the run after every generation. Copy on write so that listeners can be added while the run is going
+  List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+  // Delivers snapshots to Flow.Subscribers. Created by the first subscribe, so runs without subscribers have no publisher thread
+  volatile SubmissionPublisher<GenerationSnapshot> publisher;
+
+  // Set by cancel, read by the thread of the run between generations
+  volatile boolean cancelled;
+
+  // The snapshot of the last generation, and the reason the run stopped (null while it is going)
+  volatile GenerationSnapshot latest;
+  volatile String stopReason;
+
+  /**
+   * Constructor
+   * @param evolver
+   *   (Evolver) the algorithm to run, for example a GenerationArena or a SteadyStateEngine
+   * @param budget
+   *   (Budget) the limits of the run
+   */
+  public GeneticRun(Evolver evolver, Budget budget) {
+    this.evolver = evolver;
+    this.budget = budget;
+  }
+
+  /**
+   * Adds a Listener, which is called after every following generation
+   * @param listener
+   *   (Listener) the Listener
+   */
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Subscribes to the snapshots of the following generations. The subscriber completes when the run stops, or immediately if it already stopped
+   * @param subscriber
+   *   (Flow.Subscriber) the subscriber
+   */
+  @Override
+  public synchronized void subscribe(Flow.Subscriber<? super GenerationSnapshot> subscriber) {
+    if (publisher == null) {
+      publisher = new SubmissionPublisher<GenerationSnapshot>();
+      if (stopReason != null)
+        publisher.close();
+    }
+    publisher.subscribe(subscriber);
+  }
+
+  /**
+   * Asks the run to stop before its next generation. Can be called from any thread
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Runs generations until a limit of the budget is reached or the run is cancelled, publishing a snapshot of the source population and of every generation
+   */
+  @Override
+  public void run() {
+    long start = System.nanoTime();
+    PackedPopulation population = evolver.getPopulation();
+    Genotype genotype = population.getGenotype();
+    long startEvaluations = genotype.getEvaluationCount();
+
+    int generation = 0;
+    int generationsSinceImprovement = 0;
+    Chromosome best = population.toChromosome(population.getBestIndex());
+
+    try {
+      while (true) {
+        long elapsedNanos = System.nanoTime() - start;
+        long evaluations = genotype.getEvaluationCount() - startEvaluations;
+        publish(new GenerationSnapshot(generation, evaluations, elapsedNanos, best, population.getMinScore(), population.getAverageScore(), generationsSinceImprovement));
+
+        String reason = checkBudget(best.getFitnessScore(), generation, elapsedNanos, evaluations, generationsSinceImprovement);
+        if (reason != null) {
+          stopReason = reason;
+          break;
+        }
+
+        evolver.nextGeneration();
+        generation++;
+
+        // The population may be a different buffer after each generation
+        population = evolver.getPopulation();
+        if (population.getBestScore()>best.getFitnessScore()) {
+          best = population.toChromosome(population.getBestIndex());
+          generationsSinceImprovement = 0;
+        } else {
+          generationsSinceImprovement++;
+        }
+      }
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        if (publisher != null)
+          publisher.closeExceptionally(e);
+      }
+      throw e;
+    }
+
+    for (Listener listener : listeners)
+      listener.onComplete(latest, stopReason);
+    synchronized (this) {
+      if (publisher != null)
+        publisher.close();
+    }
+  }
+
+  /**
+   * Runs on a thread of executor
+   * @param executor
+   *   (ExecutorService) the executor of the run
+   * @return
+   *   (Future) completes with the last snapshot when the run stops. Cancelling it with interruption also cancels the run
+   */
+  public Future<GenerationSnapshot> start(ExecutorService executor) {
+    return executor.submit(() -> {
+      run();
+      return latest;
+    });
+  }
+
+  // Makes a snapshot the latest and delivers it
+  void publish(GenerationSnapshot snapshot) {
+    latest = snapshot;
+    for (Listener listener : listeners)
+      listener.onGeneration(snapshot);
+
+    SubmissionPublisher<GenerationSnapshot> publisher = this.publisher;
+    if (publisher != null)
+      // A full subscriber buffer drops the snapshot instead of blocking the run
+      publisher.offer(snapshot, (subscriber, dropped) -> false);
+  }
+
+  // Returns the reason to stop before the next generation, or null to continue
+  String checkBudget(int bestScore, int generation, long elapsedNanos, long evaluations, int generationsSinceImprovement) {
+    if (cancelled || Thread.currentThread().isInterrupted())
+      return STOP_CANCELLED;
+    if (bestScore>=budget.bestScoreTarget)
+      return STOP_TARGET;
+    if (generation>=budget.maxGenerations)
+      return STOP_GENERATIONS;
+    if (elapsedNanos>=budget.maxNanos)
+      return STOP_TIME;
+    if (evaluations>=budget.maxEvaluations)
+      return STOP_EVALUATIONS;
+    if (generationsSinceImprovement>=budget.maxGenerationsWithoutImprovement)
+      return STOP_STAGNATION;
+    return null;
+  }
+
+  /**
+   * Getter for the snapshot of the last generation
+   * @return
+   *   (GenerationSnapshot) the latest snapshot, or null before the run started
+   */
+  public GenerationSnapshot getLatest() {
+    return latest;
+  }
+
+  /**
+   * Returns the best Chromosome found so far. Can be called from any thread while the run is going
+   * @return
+   *   (Chromosome) the best Chromosome of the latest snapshot, or null before the run started. Must not be changed
+   */
+  public Chromosome getBest() {
+    GenerationSnapshot snapshot = latest;
+    return snapshot == null ? null : snapshot.getBest();
+  }
+
+  /**
+   * Getter for the reason the run stopped
+   * @return
+   *   (String) one of the STOP_ constants, or null while the run is going
+   */
+  public String getStopReason() {
+    return stopReason;
+  }
+
+  /**
+   * Receives the snapshots of a GeneticRun on the thread of the run. A Listener that takes long slows the run down, see GeneticRun.subscribe for asynchronous delivery
+   */
+  public interface Listener {
+    /**
+     * Called after the source population and after every generation
+     * @param snapshot
+     *   (GenerationSnapshot) the state after the generation
+     */
+    void onGeneration(GenerationSnapshot snapshot);
+
+    /**
+     * Called once when the run stops
+     * @param last
+     *   (GenerationSnapshot) the snapshot of the last generation
+     * @param stopReason
+     *   (String) one of the STOP_ constants
+     */
+    default void onComplete(GenerationSnapshot last, String stopReason) {
+    }
+  }
+
+  /**
+   * The limits of a GeneticRun. Every limit is unbounded until it is set, so a run with no limits set runs until it is cancelled
+   */
+  public static class Budget {
+    int bestScoreTarget = Integer.MAX_VALUE;
+    int maxGenerations = Integer.MAX_VALUE;
+    long maxNanos = Long.MAX_VALUE;
+    long maxEvaluations = Long.MAX_VALUE;
+    int maxGenerationsWithoutImprovement = Integer.MAX_VALUE;
+
+    // Stops when the best score reaches bestScoreTarget
+    public void setBestScoreTarget(int bestScoreTarget) {
+      this.bestScoreTarget = bestScoreTarget;
+    }
+
+    // Stops after maxGenerations generations
+    public void setMaxGenerations(int maxGenerations) {
+      this.maxGenerations = maxGenerations;
+    }
+
+    // Stops once the run has taken time in unit (wall clock)
+    public void setMaxTime(long time, TimeUnit unit) {
+      this.maxNanos = unit.toNanos(time);
+    }
+
+    // Stops once the run has made maxEvaluations full fitness evaluations, see Genotype.getEvaluationCount. Evaluations of other runs sharing the Genotype are counted too
+    public void setMaxEvaluations(long maxEvaluations) {
+      this.maxEvaluations = maxEvaluations;
+    }
+
+    // Stops once the best score has not improved for maxGenerationsWithoutImprovement generations
+    public void setMaxGenerationsWithoutImprovement(int maxGenerationsWithoutImprovement) {
+      this.maxGenerationsWithoutImprovement = maxGenerationsWithoutImprovement;
+    }
+  }
+}
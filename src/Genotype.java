@@ -1,12 +1,37 @@
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A Genotype is a collection of Item objects, along with methods for evaluating Chromsomes (which are subsets of the Genotypes Items).
- * TODO: implement the addFromFile() CSV methods
  */
 public class Genotype {
-  // A Genotype is mainly an arraylist of Items. Items must be stored in an arraylist because index lookup performance is critical
-  public ArrayList<Item> genotype;
+  // The Items are stored as three int columns, so that the fitness loops read values and costs from contiguous arrays without dereferencing an Item per gene. Only the first itemCount entries of the columns are Items, the rest is room to grow
+  int itemCount;
+  int[] itemNums = new int[16];
+  int[] values = new int[16];
+  int[] costs = new int[16];
+  
+  // A view of the columns as a list of Items, for code that works with Item objects. Items read from it read and write the columns
+  public List<Item> genotype;
+  
+  // The number of Chromosomes calculateFitness(List, from, to) transposes and sums at a time, so that a block of a few gene words per Chromosome stays in the L1 and L2 caches
+  static final int BATCH_BLOCK = 64;
+  
+  // Identifies a snapshot file written by saveSnapshot ("GTYP"), and the version of its layout
+  static final int SNAPSHOT_MAGIC = 0x47545950;
+  static final int SNAPSHOT_VERSION = 1;
+  static final int SNAPSHOT_HEADER_BYTES = 32;
   
   // Instance variables storing information required for evaluating Chromosomes. See the constructor comments for details.
   public int idealTotalCost;
@@ -14,6 +39,30 @@ public class Genotype {
   public double costScoreWeight;
   public int genotypeTotalCost;
   
+  // The number of full fitness evaluations since the Genotype was created or the count was reset. A LongAdder, so that threads scoring in parallel do not contend on one counter. Incremental updates after mutation and answers from the fitnessCache are not counted
+  LongAdder evaluations = new LongAdder();
+  
+  // An optional cache of the sums of recently evaluated Chromosomes, consulted by calculateSums. null (the default) means every Chromosome is evaluated
+  FitnessCache fitnessCache;
+  
+  // Optional metrics of the runs scoring with this Genotype. Counts the full evaluations and the genes flipped by mutation, and the generational algorithms record their phases into it. null (the default) means nothing is recorded
+  Metrics metrics;
+  
+  // The kernels calculateSums can sum the included Items with. SPARSE visits the 1 genes one by one, SLICED sums whole words with the BitPlanes, AUTO picks the faster of the two for each word by its number of 1 genes
+  public static final String KERNEL_AUTO = "auto";
+  public static final String KERNEL_SPARSE = "sparse";
+  public static final String KERNEL_SLICED = "sliced";
+  
+  // The kernel of new Genotypes, from the system property genotype.fitnessKernel, for example -Dgenotype.fitnessKernel=sparse
+  static final String DEFAULT_FITNESS_KERNEL = System.getProperty("genotype.fitnessKernel", KERNEL_AUTO);
+  
+  // The kernel calculateSums uses, and the number of 1 genes above which a word is summed with the BitPlanes (-1 for the BitPlanes' own threshold, 0 for always, Integer.MAX_VALUE for never)
+  String fitnessKernel;
+  int slicedThreshold;
+  
+  // The Items transposed for the SLICED kernel. Built on first use and dropped when the Items change. Volatile, so that a thread scoring in parallel sees either null or complete planes
+  volatile BitPlanes bitPlanes;
+  
   /**
    * Constructor for the Genotype object when weights for value and cost are provided
    * @param idealTotalCost
@@ -28,8 +77,8 @@ public class Genotype {
    *   higher values (such as 0.9) will result in cost having a larger impact on the fitness scores
    */
   public Genotype(int idealTotalCost, double valueScoreWeight, double costScoreWeight) {
-    // Create an arraylist for storing Items
-    genotype = new ArrayList<Item>();
+    // Create the Item view of the columns
+    genotype = new ItemList();
     
     // Set idealTotalCost to the value provided
     this.idealTotalCost = idealTotalCost;
@@ -40,6 +89,9 @@ public class Genotype {
     
     // Set genotypeTotalCost = 0, since we don't have any Items yet
     this.genotypeTotalCost = 0;
+    
+    // Use the kernel chosen by the genotype.fitnessKernel system property
+    setFitnessKernel(DEFAULT_FITNESS_KERNEL);
   }
   
   /**
@@ -53,8 +105,8 @@ public class Genotype {
     double defaultValueScoreWeight = 0.9;
     double defaultCostScoreWeight = 0.1;
     
-    // Create an arraylist for the items
-    genotype = new ArrayList<Item>();
+    // Create the Item view of the columns
+    genotype = new ItemList();
     
     // Set idealTotalCost to the value provided
     this.idealTotalCost = idealTotalCost;
@@ -65,10 +117,32 @@ public class Genotype {
     
     // Set genotypeTotalCost = 0, since we don't have any Items yet
     this.genotypeTotalCost = 0;
+    
+    // Use the kernel chosen by the genotype.fitnessKernel system property
+    setFitnessKernel(DEFAULT_FITNESS_KERNEL);
   }
   
   /**
-   * Creates an Item object with specified values and adds it to the genotype
+   * Copy constructor. The copy has the same Items, idealTotalCost, weights and genotypeTotalCost, but its own evaluation count and no fitnessCache, so that for example each trial of an experiment can count its own evaluations. The metrics are shared, so that they add up all trials
+   * @param original
+   *   (Genotype) the Genotype to copy
+   */
+  public Genotype(Genotype original) {
+    genotype = new ItemList();
+    this.itemCount = original.itemCount;
+    this.itemNums = Arrays.copyOf(original.itemNums, Math.max(16, original.itemCount));
+    this.values = Arrays.copyOf(original.values, Math.max(16, original.itemCount));
+    this.costs = Arrays.copyOf(original.costs, Math.max(16, original.itemCount));
+    this.idealTotalCost = original.idealTotalCost;
+    this.valueScoreWeight = original.valueScoreWeight;
+    this.costScoreWeight = original.costScoreWeight;
+    this.genotypeTotalCost = original.genotypeTotalCost;
+    this.metrics = original.metrics;
+    setFitnessKernel(original.fitnessKernel);
+  }
+  
+  /**
+   * Adds an Item with specified values to the genotype
    * @param itemNum
    *   (int) a unique identifier for the Item
    * @param value
@@ -77,14 +151,79 @@ public class Genotype {
    *   (int) how much capacity the Item takes
    */
   public void add(int itemNum, int value, int cost) {
-    // Use the parameters to create a new Item object
-    Item item = new Item(itemNum, value, cost);
+    // Append the Item to the end of the columns
+    ensureCapacity(itemCount + 1);
+    itemNums[itemCount] = itemNum;
+    values[itemCount] = value;
+    costs[itemCount] = cost;
+    itemCount++;
+    
+    // Cached sums and the BitPlanes were calculated with the old Items
+    itemsChanged();
+    
+    // Update the Genotype's genotypeTotalCost variable. This variable is used by calculateFitness
+    genotypeTotalCost += cost;
+  }
+  
+  // Grows the columns to hold at least capacity Items
+  void ensureCapacity(int capacity) {
+    if (capacity<=itemNums.length)
+      return;
+    int newCapacity = Math.max(capacity, itemNums.length * 2);
+    itemNums = Arrays.copyOf(itemNums, newCapacity);
+    values = Arrays.copyOf(values, newCapacity);
+    costs = Arrays.copyOf(costs, newCapacity);
+  }
+  
+  /**
+   * Adds Items from int columns, for example the rows read by an ItemFileLoader. genotypeTotalCost is recalculated once at the end instead of per Item. Throws an IllegalArgumentException, without adding anything, if the fitness scores of the Items would not fit in an int (see checkScoreRange)
+   * @param itemNums
+   *   (int[]) the itemNum of each Item
+   * @param values
+   *   (int[]) the value of each Item
+   * @param costs
+   *   (int[]) the cost of each Item
+   * @param count
+   *   (int) the number of Items to add from the start of the columns
+   */
+  public void addAll(int[] itemNums, int[] values, int[] costs, int count) {
+    if (count<0 || count>itemNums.length || count>values.length || count>costs.length)
+      throw new IllegalArgumentException("count must be between 0 and the length of the columns.");
     
-    // Append the new Item object to the end of the genotype arraylist
-    genotype.add(item);
+    // Large catalogues are checked before anything is added, so a rejected file leaves the Genotype unchanged
+    checkScoreRange(absoluteSum(this.values, itemCount) + absoluteSum(values, count), absoluteSum(this.costs, itemCount) + absoluteSum(costs, count));
     
-    // Update the Genotype's genotypeTotalCost variable. This variable is currently used by calculateFitness
-    setIdealTotalCost(genotypeTotalCost + cost);
+    ensureCapacity(itemCount + count);
+    System.arraycopy(itemNums, 0, this.itemNums, itemCount, count);
+    System.arraycopy(values, 0, this.values, itemCount, count);
+    System.arraycopy(costs, 0, this.costs, itemCount, count);
+    itemCount += count;
+    updateGenotypeTotalCost();
+    
+    // Cached sums and the BitPlanes were calculated with the old Items
+    itemsChanged();
+  }
+  
+  // The sum of the absolute values of the first count entries of a column
+  static long absoluteSum(int[] column, int count) {
+    long sum = 0;
+    for (int i=0; i<count; i++)
+      sum += Math.abs((long) column[i]);
+    return sum;
+  }
+  
+  /**
+   * Throws unless every fitness score of Items whose values and costs add up to at most valueSum and costSum (in absolute value) fits in an int. Larger sums wrap around in the packed sums and larger scores are cut off by the cast in scoreFromSums, so every score would silently be wrong. The cost term is the largest: genotypeTotalCost squared, or (idealTotalCost - cost sum) squared
+   * @param valueSum
+   *   (long) the sum of the absolute values of the Items
+   * @param costSum
+   *   (long) the sum of the absolute costs of the Items
+   */
+  void checkScoreRange(long valueSum, long costSum) {
+    double costDistance = Math.abs((double) idealTotalCost) + costSum;
+    double maxScore = Math.abs(valueScoreWeight) * valueSum + Math.abs(costScoreWeight) * costDistance * costDistance;
+    if (valueSum>Integer.MAX_VALUE || costSum>Integer.MAX_VALUE || maxScore>Integer.MAX_VALUE)
+      throw new IllegalArgumentException("The fitness scores of these Items would not fit in an int: their values add up to " + valueSum + " and their costs to " + costSum + ". Scale the values and costs down or lower the score weights.");
   }
   
   /**
@@ -100,10 +239,10 @@ public class Genotype {
    * Iterates through the Items in the genotype and calculates the sum of the costs. Updates the value of genotypeTotalCost to the calculated value
    */
   public void updateGenotypeTotalCost() {
-    // Iterate through each of the items in the genotype arraylist and calculate a running total of cost
+    // Iterate through the cost column and calculate a running total of cost
     int cost = 0;
-    for (int i=0; i<genotype.size(); i++)
-      cost += genotype.get(i).getCost();
+    for (int i=0; i<itemCount; i++)
+      cost += costs[i];
     
     // Update the value of genotypeTotalCost to the calculated value
     genotypeTotalCost = cost;
@@ -134,7 +273,7 @@ public class Genotype {
    *   (int) the number of Items in the genotype
    */
   public int getCountItems() {
-    return genotype.size();
+    return itemCount;
   }
   
   /**
@@ -143,8 +282,50 @@ public class Genotype {
    *   (int) the number of genes in each Chromosome
    */
   public int genesCount() {
-    // The number of genes in each chromosome is equal to the number of items in the genotype arraylist
-    return genotype.size();
+    // The number of genes in each chromosome is equal to the number of items in the genotype
+    return itemCount;
+  }
+  
+  /**
+   * Getter for the itemNum of an Item, read straight from the column without an Item object
+   * @param index
+   *   (int) the index of the Item, which is also the index of its gene
+   * @return
+   *   (int) the Item's unique identifier
+   */
+  public int getItemNum(int index) {
+    checkIndex(index);
+    return itemNums[index];
+  }
+  
+  /**
+   * Getter for the value of an Item, read straight from the column without an Item object
+   * @param index
+   *   (int) the index of the Item, which is also the index of its gene
+   * @return
+   *   (int) how much benefit the Item provides
+   */
+  public int getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+  
+  /**
+   * Getter for the cost of an Item, read straight from the column without an Item object
+   * @param index
+   *   (int) the index of the Item, which is also the index of its gene
+   * @return
+   *   (int) how much capacity the Item takes
+   */
+  public int getCost(int index) {
+    checkIndex(index);
+    return costs[index];
+  }
+  
+  // Throws the exception of an ArrayList for indexes past the last Item, which the spare room of the columns would otherwise hide
+  void checkIndex(int index) {
+    if (index<0 || index>=itemCount)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + itemCount);
   }
   
   /**
@@ -193,36 +374,423 @@ public class Genotype {
    *   (int) returns a calculated score of how well the chromosome solves our problem. The better the solution the higher the fitness value.
    */
   public int calculateFitness(Chromosome chromosome) {
+    // The Chromosome is only read, so the same Chromosome can be scored by several threads. Chromosome.evaluate also keeps the sums for delta mutation
+    return scoreFromSums(calculateSums(chromosome.genes, 0, chromosome.genes.length));
+  }
+  
+  /**
+   * Calculates the fitness of a Chromosome stored as a slice of a gene word array, such as one Chromosome of a PackedPopulation. See calculateFitness(Chromosome)
+   * @param genes
+   *   (long[]) the bit-packed gene words
+   * @param offset
+   *   (int) the index of the Chromosome's first word
+   * @param wordCount
+   *   (int) the number of gene words of the Chromosome
+   * @return
+   *   (int) returns a calculated score of how well the chromosome solves our problem. The better the solution the higher the fitness value.
+   */
+  public int calculateFitness(long[] genes, int offset, int wordCount) {
+    return scoreFromSums(calculateSums(genes, offset, wordCount));
+  }
+  
+  /**
+   * Calculates the fitness of a block of Chromosomes stored one after another in a gene word array, such as the Chromosomes [from, to) of a PackedPopulation, in one pass.
+   * The block is summed one gene word at a time across all of its Chromosomes (see sumBlock), so the Item data of each word is loaded once for the whole block instead of once per Chromosome. Nothing is allocated
+   * @param genes
+   *   (long[]) the bit-packed gene words. Chromosome i starts at word i * wordCount
+   * @param wordCount
+   *   (int) the number of gene words of each Chromosome
+   * @param from
+   *   (int) the index of the first Chromosome of the block
+   * @param to
+   *   (int) the index after the last Chromosome of the block
+   * @param sums
+   *   (long[]) receives the packed value and cost sums of Chromosome i at index i
+   * @param scores
+   *   (int[]) receives the fitness score of Chromosome i at index i
+   */
+  public void calculateFitness(long[] genes, int wordCount, int from, int to, long[] sums, int[] scores) {
+    if (fitnessCache != null) {
+      // Each Chromosome is looked up in the cache on its own
+      for (int i=from; i<to; i++) {
+        sums[i] = calculateSums(genes, i * wordCount, wordCount);
+        scores[i] = scoreFromSums(sums[i]);
+      }
+      return;
+    }
+    
+    // The scores and sums arrays hold the running value and cost sums until the block is summed
+    for (int i=from; i<to; i++) {
+      scores[i] = 0;
+      sums[i] = 0;
+    }
+    sumBlock(genes, from * wordCount, wordCount, 1, wordCount, to - from, scores, sums, from);
+    for (int i=from; i<to; i++) {
+      sums[i] = packSums(scores[i], (int) sums[i]);
+      scores[i] = scoreFromSums(sums[i]);
+    }
+  }
+  
+  /**
+   * Calculates and sets the fitnessScore (and the sums for delta mutation) of the Chromosomes [from, to) of a list in one pass, for example a whole Population.
+   * The gene words of up to BATCH_BLOCK Chromosomes at a time are transposed into a block where word w of every Chromosome is adjacent, and the block is summed one gene word at a time across its Chromosomes (see sumBlock)
+   * @param chromosomes
+   *   (List) the Chromosomes. Each must have genesCount() genes
+   * @param from
+   *   (int) the index of the first Chromosome to score
+   * @param to
+   *   (int) the index after the last Chromosome to score
+   */
+  public void calculateFitness(List<Chromosome> chromosomes, int from, int to) {
+    if (fitnessCache != null) {
+      for (int i=from; i<to; i++) {
+        // Sets the fitnessScore and the sums for delta mutation
+        chromosomes.get(i).evaluate(this);
+      }
+      return;
+    }
+    
+    int wordCount = Chromosome.wordCount(itemCount);
+    int blockSize = Math.min(BATCH_BLOCK, to - from);
+    long[] block = new long[wordCount * blockSize];
+    int[] valueSums = new int[blockSize];
+    long[] costSums = new long[blockSize];
+    
+    for (int start=from; start<to; start+=blockSize) {
+      int count = Math.min(blockSize, to - start);
+      // Transpose: word w of the k-th Chromosome of the block goes to block[w * count + k]
+      for (int k=0; k<count; k++) {
+        long[] genes = chromosomes.get(start + k).genes;
+        for (int w=0; w<wordCount; w++)
+          block[w * count + k] = genes[w];
+      }
+      
+      Arrays.fill(valueSums, 0);
+      Arrays.fill(costSums, 0);
+      sumBlock(block, 0, 1, count, wordCount, count, valueSums, costSums, 0);
+      
+      for (int k=0; k<count; k++) {
+        Chromosome chromosome = chromosomes.get(start + k);
+        chromosome.sums = packSums(valueSums[k], (int) costSums[k]);
+        chromosome.sumsValid = true;
+        chromosome.setFitnessScore(scoreFromSums(chromosome.sums));
+      }
+    }
+  }
+  
+  /**
+   * Adds the value and cost sums of a block of Chromosomes, one gene word at a time across all of them, so that the BitPlanes or Item columns of a word stay in cache while every Chromosome of the block is summed. Each word is summed with the fitnessKernel
+   * @param genes
+   *   (long[]) the gene words of the block
+   * @param first
+   *   (int) the index of word 0 of the first Chromosome
+   * @param chromosomeStride
+   *   (int) the distance between the same word of two consecutive Chromosomes
+   * @param wordStride
+   *   (int) the distance between two consecutive words of a Chromosome
+   * @param wordCount
+   *   (int) the number of gene words of each Chromosome
+   * @param count
+   *   (int) the number of Chromosomes in the block
+   * @param valueSums
+   *   (int[]) the value sum of Chromosome k is added to index resultOffset + k
+   * @param costSums
+   *   (long[]) the cost sum of Chromosome k is added to index resultOffset + k. Only the low 32 bits are meaningful
+   * @param resultOffset
+   *   (int) the index of the sums of the first Chromosome
+   */
+  void sumBlock(long[] genes, int first, int chromosomeStride, int wordStride, int wordCount, int count, int[] valueSums, long[] costSums, int resultOffset) {
+    evaluations.add(count);
+    if (metrics != null)
+      metrics.evaluations.add(count);
+    
+    BitPlanes planes = slicedThreshold == Integer.MAX_VALUE ? null : bitPlanes();
+    int threshold = slicedThreshold == 0 || planes == null ? slicedThreshold : planes.slicedThreshold();
+    int[] values = this.values;
+    int[] costs = this.costs;
+    
+    for (int w=0; w<wordCount; w++) {
+      int wordIndex = first + w * wordStride;
+      for (int k=0; k<count; k++) {
+        long word = genes[wordIndex + k * chromosomeStride];
+        if (word == 0)
+          continue;
+        if (planes != null && Long.bitCount(word)>threshold) {
+          valueSums[resultOffset + k] += planes.valueSum(word, w);
+          costSums[resultOffset + k] += planes.costSum(word, w);
+          continue;
+        }
+        int value = 0;
+        int cost = 0;
+        while (word != 0) {
+          int i = (w << 6) + Long.numberOfTrailingZeros(word);
+          value += values[i];
+          cost += costs[i];
+          word &= word - 1;
+        }
+        valueSums[resultOffset + k] += value;
+        costSums[resultOffset + k] += cost;
+      }
+    }
+  }
+  
+  /**
+   * Calculates the sum of the values and the sum of the costs of the Items included in a Chromosome stored as a slice of a gene word array.
+   * The two sums are packed into a single long (see packSums) so that no object has to be allocated to return them. If a fitnessCache is set the sums are looked up in it first, and only evaluated (and counted) on a miss
+   * @param genes
+   *   (long[]) the bit-packed gene words
+   * @param offset
+   *   (int) the index of the Chromosome's first word
+   * @param wordCount
+   *   (int) the number of gene words of the Chromosome
+   * @return
+   *   (long) the packed value and cost sums of the included Items
+   */
+  public long calculateSums(long[] genes, int offset, int wordCount) {
+    if (fitnessCache == null)
+      return sumItems(genes, offset, wordCount);
+    
+    long hash = FitnessCache.hash(genes, offset, wordCount);
+    long sums = fitnessCache.get(hash);
+    if (sums == FitnessCache.MISSING) {
+      sums = sumItems(genes, offset, wordCount);
+      fitnessCache.put(hash, sums);
+    }
+    return sums;
+  }
+  
+  // Evaluates the sums of calculateSums with the fitnessKernel
+  long sumItems(long[] genes, int offset, int wordCount) {
+    evaluations.increment();
+    if (metrics != null)
+      metrics.evaluations.increment();
+    
+    // The words with more 1 genes than the slicedThreshold are summed with the BitPlanes, with an AND and a POPCNT per plane instead of a branch and two loads per gene
+    BitPlanes planes = slicedThreshold == Integer.MAX_VALUE ? null : bitPlanes();
+    int threshold = slicedThreshold == 0 || planes == null ? slicedThreshold : planes.slicedThreshold();
+    
     // Iterate through each of genes (Items) contained in the chromosome and maintain a running sum of their values and costs
+    // Local copies of the columns, so that the JIT compiler keeps them in registers
+    int[] values = this.values;
+    int[] costs = this.costs;
     // Running sum of value
     int chromosomeValue = 0;
     // Running sum of cost
     int chromosomeCost = 0;
-    // Iterate through each gene in the chromosome
-    for (int i=0; i<chromosome.geneCount(); i++)
-      // If the gene value is 1 the related Item from the genotype is included in the solution
-      if (chromosome.getGene(i) == 1) {
-        // If the Item is in the solution add its value and cost to the running sum. Each index of the chromosome relates to the same index of the genotype arraylist containing the Items
-        chromosomeValue += genotype.get(i).getValue();
-        chromosomeCost += genotype.get(i).getCost();
+    // Iterate through each bit-packed gene word in the chromosome. Only the genes with value 1 (Items included in the solution) are visited, so words with no included Items cost a single comparison
+    for (int w=0; w<wordCount; w++) {
+      long word = genes[offset + w];
+      if (planes != null && Long.bitCount(word)>threshold) {
+        chromosomeValue += planes.valueSum(word, w);
+        chromosomeCost += planes.costSum(word, w);
+        continue;
+      }
+      while (word != 0) {
+        // The lowest set bit of the word is the next included gene. Each index of the chromosome relates to the same index of the Item columns
+        int i = (w << 6) + Long.numberOfTrailingZeros(word);
+        // The Item is in the solution, add its value and cost to the running sum
+        chromosomeValue += values[i];
+        chromosomeCost += costs[i];
+        // Clear the lowest set bit
+        word &= word - 1;
       }
+    }
     
+    return packSums(chromosomeValue, chromosomeCost);
+  }
+  
+  /**
+   * Updates the packed value and cost sums of a Chromosome after some of the genes of one of its words were flipped. Only the flipped genes are visited, so the cost of the update is proportional to the number of flips and not to the number of genes
+   * @param sums
+   *   (long) the packed sums of the Chromosome before the flips
+   * @param wordIndex
+   *   (int) the index of the flipped word within the Chromosome (gene index / 64)
+   * @param word
+   *   (long) the value of the word after the flips
+   * @param flipMask
+   *   (long) the bits of the word that were flipped
+   * @return
+   *   (long) the packed sums of the Chromosome after the flips
+   */
+  public long applyFlips(long sums, int wordIndex, long word, long flipMask) {
+    if (metrics != null)
+      metrics.mutationFlips.add(Long.bitCount(flipMask));
+    
+    int chromosomeValue = valueSum(sums);
+    int chromosomeCost = costSum(sums);
+    
+    // Iterate through the flipped genes. A gene that is now 1 added its Item to the solution, a gene that is now 0 removed it
+    while (flipMask != 0) {
+      int bit = Long.numberOfTrailingZeros(flipMask);
+      int i = (wordIndex << 6) + bit;
+      if ((word >>> bit & 1) != 0) {
+        chromosomeValue += values[i];
+        chromosomeCost += costs[i];
+      } else {
+        chromosomeValue -= values[i];
+        chromosomeCost -= costs[i];
+      }
+      // Clear the lowest set bit
+      flipMask &= flipMask - 1;
+    }
+    
+    return packSums(chromosomeValue, chromosomeCost);
+  }
+  
+  /**
+   * Calculates a fitness score from the packed value and cost sums of a Chromosome. This is the part of calculateFitness that does not depend on the individual genes, so calculateFitness and the incremental updates of mutation always give the same score
+   * @param sums
+   *   (long) the packed value and cost sums, see packSums
+   * @return
+   *   (int) returns a calculated score of how well the chromosome solves our problem. The better the solution the higher the fitness value.
+   */
+  public int scoreFromSums(long sums) {
     // We use the sums of values and costs to calculate the fitness of the chromosome (how well the chromosome's Items solve our problem)
     // For the value score we are simply using the running sum of values
-    double valueScore = chromosomeValue;
+    double valueScore = valueSum(sums);
     // To measure how well the cost of the chromosome solves our problem, we subtract its cost sum from what the ideal cost would be. Since this alone would result in better solutions having a lower value we square the sum of the cost of all items in the genotype and subtract the ideal cost/ chromosome cost difference from that so that better solutions result in higher scores (this is required for some selection methods)
-    double costScore = (genotypeTotalCost*genotypeTotalCost) - (Math.pow(getIdealTotalCost()-chromosomeCost,2));
+    double costScore = ((double) genotypeTotalCost*genotypeTotalCost) - (Math.pow(getIdealTotalCost()-costSum(sums),2));
     // We have double(decimal) weights for how important value is and how important cost is, and also to balance the difference in scale between the measurements. We multiply the values calculated above by the weights, cast them to an int and return
     return (int) (getValueScoreWeight()*valueScore + getCostScoreWeight()*costScore);
   }
   
+  /**
+   * Getter for the number of full fitness evaluations since the Genotype was created or resetEvaluationCount() was called
+   * @return
+   *   (long) the number of full fitness evaluations
+   */
+  public long getEvaluationCount() {
+    return evaluations.sum();
+  }
+  
+  /**
+   * Resets the number of full fitness evaluations to 0
+   */
+  public void resetEvaluationCount() {
+    evaluations.reset();
+  }
+  
+  /**
+   * Getter for fitnessKernel
+   * @return
+   *   (String) KERNEL_AUTO, KERNEL_SPARSE or KERNEL_SLICED
+   */
+  public String getFitnessKernel() {
+    return fitnessKernel;
+  }
+  
+  /**
+   * Setter for fitnessKernel. All kernels give the same sums; they differ only in speed. SPARSE is fastest for Chromosomes with few 1 genes, SLICED for Chromosomes with many, and AUTO (the default) chooses per gene word
+   * @param fitnessKernel
+   *   (String) KERNEL_AUTO, KERNEL_SPARSE or KERNEL_SLICED
+   */
+  public void setFitnessKernel(String fitnessKernel) {
+    if (KERNEL_AUTO.equals(fitnessKernel))
+      slicedThreshold = -1;
+    else if (KERNEL_SPARSE.equals(fitnessKernel))
+      slicedThreshold = Integer.MAX_VALUE;
+    else if (KERNEL_SLICED.equals(fitnessKernel))
+      slicedThreshold = 0;
+    else
+      throw new IllegalArgumentException("fitnessKernel must be one of: " + KERNEL_AUTO + ", " + KERNEL_SPARSE + ", " + KERNEL_SLICED);
+    this.fitnessKernel = fitnessKernel;
+  }
+  
+  // Returns the BitPlanes of the Items, building them if the Items changed since they were last used
+  BitPlanes bitPlanes() {
+    BitPlanes planes = bitPlanes;
+    if (planes == null) {
+      planes = new BitPlanes(values, costs, itemCount);
+      bitPlanes = planes;
+    }
+    return planes;
+  }
+  
+  /**
+   * Getter for fitnessCache
+   * @return
+   *   (FitnessCache) the cache consulted by calculateSums, or null if there is none
+   */
+  public FitnessCache getFitnessCache() {
+    return fitnessCache;
+  }
+  
+  /**
+   * Setter for fitnessCache. A cache is worth it when evaluations are expensive compared to hashing the gene words, for example with many Items or a costlier fitness function. The cache is cleared whenever the Items change
+   * @param fitnessCache
+   *   (FitnessCache) the cache to consult in calculateSums, or null to evaluate every Chromosome
+   */
+  public void setFitnessCache(FitnessCache fitnessCache) {
+    this.fitnessCache = fitnessCache;
+  }
+  
+  /**
+   * Getter for metrics
+   * @return
+   *   (Metrics) the metrics the runs scoring with this Genotype record into, or null if there are none
+   */
+  public Metrics getMetrics() {
+    return metrics;
+  }
+  
+  /**
+   * Setter for metrics. Set before a run starts, so that every generation of the run is recorded
+   * @param metrics
+   *   (Metrics) the metrics to record into, or null to record nothing
+   */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+  
+  /**
+   * Packs a value sum and a cost sum into a single long, the value sum in the high 32 bits and the cost sum in the low 32 bits
+   * @param value
+   *   (int) the sum of the values of the included Items
+   * @param cost
+   *   (int) the sum of the costs of the included Items
+   * @return
+   *   (long) the packed sums
+   */
+  static long packSums(int value, int cost) {
+    return ((long) value << 32) | (cost & 0xFFFFFFFFL);
+  }
+  
+  /**
+   * Returns the value sum of packed sums
+   * @param sums
+   *   (long) the packed sums, see packSums
+   * @return
+   *   (int) the sum of the values of the included Items
+   */
+  static int valueSum(long sums) {
+    return (int) (sums >> 32);
+  }
+  
+  /**
+   * Returns the cost sum of packed sums
+   * @param sums
+   *   (long) the packed sums, see packSums
+   * @return
+   *   (int) the sum of the costs of the included Items
+   */
+  static int costSum(long sums) {
+    return (int) sums;
+  }
+  
   /**
    * Adds Items to the Genotype from a CSV file. The structure is itemNum,value,cost. If a header column exists it will be ignored. All numbers will be cast to int, but text in rows below the header will result in an illegal argument exception
+   * The file is memory-mapped and parsed in parallel chunks by an ItemFileLoader, so files with millions of rows load quickly
    * @param path
    *   The path to the CSV file. 
    */
   public void addFromFile(String path) {
-    throw new UnsupportedOperationException("addFromFile(path) has not yet been implemented.");
+    ItemFileLoader loader = new ItemFileLoader(path);
+    try {
+      loader.load();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read " + path, e);
+    }
+    addAll(loader.getItemNums(), loader.getValues(), loader.getCosts(), loader.getCount());
   }
   
   /**
@@ -231,7 +799,89 @@ public class Genotype {
    *   The path to the CSV file. 
    */
   public void addFromFile() {
-    throw new UnsupportedOperationException("addFromFile() has not yet been implemented.");
+    // Use data.csv if it exists
+    File directory = new File(System.getProperty("user.dir"));
+    File dataFile = new File(directory, "data.csv");
+    if (dataFile.isFile()) {
+      addFromFile(dataFile.getPath());
+      return;
+    }
+    
+    // Otherwise use the only .csv file in the directory
+    File[] csvFiles = directory.listFiles((dir, name) -> name.toLowerCase().endsWith(".csv") && new File(dir, name).isFile());
+    if (csvFiles == null || csvFiles.length != 1)
+      throw new IllegalArgumentException("There is no data.csv file and not exactly one .csv file in " + directory + ". Use addFromFile(path).");
+    addFromFile(csvFiles[0].getPath());
+  }
+  
+  /**
+   * Writes the Items, idealTotalCost and weights to a binary snapshot, which loadSnapshot reads much faster than a CSV file can be parsed. The snapshot is a 32 byte header (SNAPSHOT_MAGIC, SNAPSHOT_VERSION, the number of Items, idealTotalCost, valueScoreWeight, costScoreWeight) followed by the itemNum, value and cost columns as big-endian ints
+   * @param path
+   *   (String) the path of the snapshot file. An existing file is replaced
+   */
+  public void saveSnapshot(String path) {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+      buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(itemCount).putInt(idealTotalCost);
+      buffer.putDouble(valueScoreWeight).putDouble(costScoreWeight);
+      for (int[] column : new int[][] { itemNums, values, costs }) {
+        for (int i=0; i<itemCount; i++) {
+          if (!buffer.hasRemaining()) {
+            writeFully(channel, buffer);
+          }
+          buffer.putInt(column[i]);
+        }
+      }
+      writeFully(channel, buffer);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write " + path, e);
+    }
+  }
+  
+  // Writes the contents of a buffer and clears it for more
+  static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+    buffer.clear();
+  }
+  
+  /**
+   * Creates a Genotype from a snapshot written by saveSnapshot. The file is memory-mapped and each column is copied into its int array in one bulk transfer
+   * @param path
+   *   (String) the path of the snapshot file
+   * @return
+   *   (Genotype) a Genotype with the Items, idealTotalCost and weights of the snapshot
+   */
+  public static Genotype loadSnapshot(String path) {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      if (channel.size()<SNAPSHOT_HEADER_BYTES)
+        throw new IllegalArgumentException(path + " is not a Genotype snapshot.");
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SNAPSHOT_HEADER_BYTES);
+      if (header.getInt() != SNAPSHOT_MAGIC)
+        throw new IllegalArgumentException(path + " is not a Genotype snapshot.");
+      int version = header.getInt();
+      if (version != SNAPSHOT_VERSION)
+        throw new IllegalArgumentException(path + " is a version " + version + " Genotype snapshot. Only version " + SNAPSHOT_VERSION + " can be read.");
+      int count = header.getInt();
+      if (count<0 || count>Integer.MAX_VALUE / 4 || channel.size() != SNAPSHOT_HEADER_BYTES + 12L * count)
+        throw new IllegalArgumentException(path + " is not a complete Genotype snapshot.");
+      
+      Genotype genotype = new Genotype(header.getInt(), header.getDouble(), header.getDouble());
+      genotype.ensureCapacity(count);
+      long position = SNAPSHOT_HEADER_BYTES;
+      for (int[] column : new int[][] { genotype.itemNums, genotype.values, genotype.costs }) {
+        channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * count).asIntBuffer().get(column, 0, count);
+        position += 4L * count;
+      }
+      // A snapshot can hold as many Items as a CSV file, so it is checked the same way as addAll
+      genotype.checkScoreRange(absoluteSum(genotype.values, count), absoluteSum(genotype.costs, count));
+      genotype.itemCount = count;
+      genotype.updateGenotypeTotalCost();
+      return genotype;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read " + path, e);
+    }
   }
   
   /**
@@ -242,32 +892,33 @@ public class Genotype {
    *   A String containing all of the information about the Chromosome. It also prints it to System.out
    */
   public String printChromosomeGenotype(Chromosome chromosome) {
-    // We will add all information to this string then print and return it
-    String returnString = "";
+    // We will add all information to this builder then print and return it
+    StringBuilder returnString = new StringBuilder();
     
     // Genotype level information
-    returnString += "idealTotalCost: " + getIdealTotalCost() + System.lineSeparator();
-    returnString += "genotypeTotalCost: " + getGenotypeTotalCost() + System.lineSeparator();
-    returnString += "valueScoreWeight: " + getValueScoreWeight() + System.lineSeparator();
-    returnString += "costScoreWeight: " + getCostScoreWeight() + System.lineSeparator();
+    returnString.append("idealTotalCost: ").append(getIdealTotalCost()).append(System.lineSeparator());
+    returnString.append("genotypeTotalCost: ").append(getGenotypeTotalCost()).append(System.lineSeparator());
+    returnString.append("valueScoreWeight: ").append(getValueScoreWeight()).append(System.lineSeparator());
+    returnString.append("costScoreWeight: ").append(getCostScoreWeight()).append(System.lineSeparator());
     
     // Iterate through the Items contained in the chromosome and add their details to the String
     for (int i=0; i<chromosome.geneCount(); i++)
       // If the gene value is 1 the related Item from the genotype is included in the solution
       if (chromosome.getGene(i) == 1) {
-        // If the Item is in the solution add its details to the String. Each index of the chromosome relates to the same index of the genotype arraylist containing the Items
-        returnString += "Item: " + genotype.get(i).getItemNum();
-        returnString += " Value: " + genotype.get(i).getValue();
-        returnString += " Cost: " + genotype.get(i).getCost();
-        returnString += System.lineSeparator();
+        // If the Item is in the solution add its details to the String. Each index of the chromosome relates to the same index of the Item columns
+        returnString.append("Item: ").append(getItemNum(i));
+        returnString.append(" Value: ").append(getValue(i));
+        returnString.append(" Cost: ").append(getCost(i));
+        returnString.append(System.lineSeparator());
       }
     
     // Calculate the fitness of the chromosome and add append it to the String
-    returnString += " Fitness Score: " + calculateFitness(chromosome);
+    returnString.append(" Fitness Score: ").append(calculateFitness(chromosome));
     
     // Print the String to System.out and return it
-    System.out.println(returnString);
-    return returnString;
+    String result = returnString.toString();
+    System.out.println(result);
+    return result;
   }
   
   /**
@@ -277,25 +928,23 @@ public class Genotype {
    */
   @Override
   public String toString() {
-    // We will add all information to this string then print and return it
-    String returnString = "";
+    // We will add all information to this builder then return it
+    StringBuilder returnString = new StringBuilder();
     
     // Genotype level information
-    returnString += "## GENOTYPE ##" + System.lineSeparator();
-    returnString += "idealTotalCost: " + getIdealTotalCost() + System.lineSeparator();
-    returnString += "genotypeTotalCost: " + getGenotypeTotalCost() + System.lineSeparator();
-    returnString += "valueScoreWeight: " + getValueScoreWeight() + System.lineSeparator();
-    returnString += "costScoreWeight: " + getCostScoreWeight() + System.lineSeparator();
-    
-    // List the details of all Items in the Genotype
-    for (int i = 0; i < genotype.size(); i++) {
-      // Used a temp Item object to access a row's details, but executing get(i) for each element would be fine since it's also O(1)
-      Item temp =  genotype.get(i);
-      returnString += "Item number: " + temp.getItemNum() + " Value: " + temp.getValue() + " Cost: " + temp.getCost();
+    returnString.append("## GENOTYPE ##").append(System.lineSeparator());
+    returnString.append("idealTotalCost: ").append(getIdealTotalCost()).append(System.lineSeparator());
+    returnString.append("genotypeTotalCost: ").append(getGenotypeTotalCost()).append(System.lineSeparator());
+    returnString.append("valueScoreWeight: ").append(getValueScoreWeight()).append(System.lineSeparator());
+    returnString.append("costScoreWeight: ").append(getCostScoreWeight()).append(System.lineSeparator());
+    
+    // List the details of all Items in the Genotype, read straight from the columns
+    for (int i = 0; i < itemCount; i++) {
+      returnString.append("Item number: ").append(itemNums[i]).append(" Value: ").append(values[i]).append(" Cost: ").append(costs[i]);
     }
     
     // Return the string
-    return returnString;
+    return returnString.toString();
   }
   
   
@@ -306,5 +955,130 @@ public class Genotype {
     // Call toString() and print the result to System.out
     System.out.println(toString());
   }
+  
+  /**
+   * The list of Items viewed by the genotype field. Each get returns a new Item backed by the columns, so setting its value or cost changes the Genotype. Items added to the list are copied into the columns, and removing Items shifts the rows after them, as an ArrayList would
+   */
+  class ItemList extends AbstractList<Item> implements RandomAccess {
+    @Override
+    public Item get(int index) {
+      checkIndex(index);
+      return new ColumnItem(index);
+    }
+    
+    @Override
+    public Item set(int index, Item item) {
+      Item previous = new Item(getItemNum(index), values[index], costs[index]);
+      itemNums[index] = item.getItemNum();
+      values[index] = item.getValue();
+      genotypeTotalCost += item.getCost() - costs[index];
+      costs[index] = item.getCost();
+      itemsChanged();
+      return previous;
+    }
+    
+    @Override
+    public boolean add(Item item) {
+      Genotype.this.add(item.getItemNum(), item.getValue(), item.getCost());
+      modCount++;
+      return true;
+    }
+    
+    // Inserts an Item by shifting the rows after index up by one
+    @Override
+    public void add(int index, Item item) {
+      if (index<0 || index>itemCount)
+        throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for " + itemCount + " Items.");
+      ensureCapacity(itemCount + 1);
+      System.arraycopy(itemNums, index, itemNums, index + 1, itemCount - index);
+      System.arraycopy(values, index, values, index + 1, itemCount - index);
+      System.arraycopy(costs, index, costs, index + 1, itemCount - index);
+      itemNums[index] = item.getItemNum();
+      values[index] = item.getValue();
+      costs[index] = item.getCost();
+      itemCount++;
+      genotypeTotalCost += item.getCost();
+      modCount++;
+      itemsChanged();
+    }
+    
+    // Removes an Item by shifting the rows after index down by one. Also used by clear(), removeIf and the list's iterators
+    @Override
+    public Item remove(int index) {
+      Item previous = new Item(getItemNum(index), values[index], costs[index]);
+      removeRange(index, index + 1);
+      return previous;
+    }
+    
+    // Removes the rows [from, to) with one shift of each column, so that clear() does not shift once per Item
+    @Override
+    protected void removeRange(int from, int to) {
+      if (from<0 || to>itemCount || from>to)
+        throw new IndexOutOfBoundsException("Range " + from + " to " + to + " is out of bounds for " + itemCount + " Items.");
+      for (int i=from; i<to; i++)
+        genotypeTotalCost -= costs[i];
+      System.arraycopy(itemNums, to, itemNums, from, itemCount - to);
+      System.arraycopy(values, to, values, from, itemCount - to);
+      System.arraycopy(costs, to, costs, from, itemCount - to);
+      itemCount -= to - from;
+      modCount++;
+      itemsChanged();
+    }
+    
+    @Override
+    public int size() {
+      return itemCount;
+    }
+  }
+  
+  /**
+   * An Item that reads and writes one row of the columns
+   */
+  class ColumnItem extends Item {
+    final int index;
+    
+    ColumnItem(int index) {
+      this.index = index;
+    }
+    
+    @Override
+    public int getItemNum() {
+      return itemNums[index];
+    }
+    
+    @Override
+    public int getValue() {
+      return values[index];
+    }
+    
+    @Override
+    public int getCost() {
+      return costs[index];
+    }
+    
+    @Override
+    public void setItemNum(int itemNum) {
+      itemNums[index] = itemNum;
+    }
+    
+    @Override
+    public void setValue(int value) {
+      values[index] = value;
+      itemsChanged();
+    }
+    
+    @Override
+    public void setCost(int cost) {
+      genotypeTotalCost += cost - costs[index];
+      costs[index] = cost;
+      itemsChanged();
+    }
+  }
+  
+  // Drops the cached sums and the BitPlanes after the Items changed
+  void itemsChanged() {
+    bitPlanes = null;
+    if (fitnessCache != null)
+      fitnessCache.clear();
+  }
 }
-
@@ -0,0 +1,176 @@
+import java.util.Locale;
+
+/**
+ * Counts long values in buckets of logarithmically growing width, so that percentiles such as p50, p95 and p99 can be read without keeping every value.
+ * Values from -63 to 63 each have their own bucket. Above that each power of two is split into 32 buckets, so a reported percentile is within about 3% of the true value, for any value up to Long.MAX_VALUE in a fixed 30 KB. Negative values are counted in a mirrored set of buckets.
+ * Histograms that were filled separately, for example one per thread, can be added together with merge. A Histogram is not thread-safe.
+ *
+ * @author willj
+ */
+public class Histogram {
+  // Values below this have their own bucket
+  static final int EXACT_BUCKETS = 64;
+
+  // The number of buckets each power of two above EXACT_BUCKETS is split into
+  static final int SUB_BUCKETS = 32;
+
+  // Enough buckets for Long.MAX_VALUE, whose highest bit is bit 62
+  static final int BUCKETS = EXACT_BUCKETS + (62 - 5) * SUB_BUCKETS;
+
+  // The counts of the values >= 0 and of the magnitudes of the values < 0
+  long[] positive = new long[BUCKETS];
+  long[] negative = new long[BUCKETS];
+
+  // Exact aggregates of all recorded values
+  long count;
+  double sum;
+  long min = Long.MAX_VALUE;
+  long max = Long.MIN_VALUE;
+
+  /**
+   * Counts a value
+   * @param value
+   *   (long) the value. Long.MIN_VALUE is counted as -Long.MAX_VALUE
+   */
+  public void record(long value) {
+    if (value>=0)
+      positive[bucket(value)]++;
+    else
+      negative[bucket(value == Long.MIN_VALUE ? Long.MAX_VALUE : -value)]++;
+
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * Adds the counts of another Histogram to this one
+   * @param other
+   *   (Histogram) the Histogram to add. It is not changed
+   */
+  public void merge(Histogram other) {
+    for (int i=0; i<BUCKETS; i++) {
+      positive[i] += other.positive[i];
+      negative[i] += other.negative[i];
+    }
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Returns the value below which a share of the recorded values falls. The value is the middle of its bucket, clamped to the exact min and max
+   * @param percentile
+   *   (double) the percentile, from 0 to 100. For example 95 for p95
+   * @return
+   *   (long) the approximate value at the percentile, or 0 if nothing was recorded
+   */
+  public long percentile(double percentile) {
+    if (percentile<0 || percentile>100)
+      throw new IllegalArgumentException("percentile must be between 0 and 100.");
+    if (count == 0)
+      return 0;
+
+    // The rank of the value, 1 for the smallest value
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+
+    // Negative values in increasing order are the negative buckets from the largest magnitude down
+    long seen = 0;
+    for (int i=BUCKETS-1; i>=0; i--) {
+      seen += negative[i];
+      if (seen>=rank)
+        return clamp(-middle(i));
+    }
+    for (int i=0; i<BUCKETS; i++) {
+      seen += positive[i];
+      if (seen>=rank)
+        return clamp(middle(i));
+    }
+    return max;
+  }
+
+  // Keeps a bucket's middle value inside the range of the recorded values
+  long clamp(long value) {
+    return Math.max(min, Math.min(max, value));
+  }
+
+  /**
+   * Returns the bucket of a value >= 0
+   * @param value
+   *   (long) the value
+   * @return
+   *   (int) the index of the bucket
+   */
+  static int bucket(long value) {
+    if (value<EXACT_BUCKETS)
+      return (int) value;
+
+    // The shift that leaves the 6 highest bits of the value, 32 to 63
+    int shift = 63 - Long.numberOfLeadingZeros(value) - 5;
+    return EXACT_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  /**
+   * Returns the middle value of a bucket
+   * @param bucket
+   *   (int) the index of the bucket
+   * @return
+   *   (long) the middle of the values that fall into the bucket
+   */
+  static long middle(int bucket) {
+    if (bucket<EXACT_BUCKETS)
+      return bucket;
+
+    int shift = (bucket - EXACT_BUCKETS) / SUB_BUCKETS + 1;
+    long lowest = (long) ((bucket - EXACT_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    return lowest + ((1L << shift) >>> 1);
+  }
+
+  /**
+   * Getter for the number of recorded values
+   * @return
+   *   (long) the number of recorded values
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the mean of the recorded values
+   * @return
+   *   (double) the exact mean, or 0 if nothing was recorded
+   */
+  public double getMean() {
+    return count == 0 ? 0 : sum / count;
+  }
+
+  /**
+   * Getter for the smallest recorded value
+   * @return
+   *   (long) the smallest recorded value, or 0 if nothing was recorded
+   */
+  public long getMin() {
+    return count == 0 ? 0 : min;
+  }
+
+  /**
+   * Getter for the largest recorded value
+   * @return
+   *   (long) the largest recorded value, or 0 if nothing was recorded
+   */
+  public long getMax() {
+    return count == 0 ? 0 : max;
+  }
+
+  /**
+   * Returns the count, mean, min, p50, p95, p99 and max on one line
+   * @return
+   *   (String) the summary
+   */
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "n=%d mean=%.1f min=%d p50=%d p95=%d p99=%d max=%d", getCount(), getMean(), getMin(), percentile(50), percentile(95), percentile(99), getMax());
+  }
+}
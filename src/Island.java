@@ -0,0 +1,144 @@
+import java.util.Random;
+
+/**
+ * An Island is one sub-population of an IslandGeneticAlgorithm. Each Island evolves its own Population with its own Selector and crossover methods, and only exchanges Chromosomes with the other Islands through migration.
+ * An Island is only ever evolved by one thread at a time, so it needs no synchronization of its own.
+ *
+ * @author willj
+ */
+public class Island {
+  // The Population that this Island evolves. It is replaced by the next generation each time evolve() is called
+  Population population;
+
+  // The Selector used to choose this Island's parents and survivors
+  Selector selector;
+
+  // The crossover operators used for the children of the first and second parent populations, resolved from the crossover method names once when the Island is created. See CrossoverOperators for valid names
+  CrossoverOperator crossover1;
+  CrossoverOperator crossover2;
+
+  // The parameters of each generation. See GeneticAlgorithm.algorithm1 for details
+  int populationSize;
+  int numberOfChildren;
+  double mutationRate;
+  int selectBest;
+
+  // Used for its nextGeneration method, which holds the generational algorithm shared with algorithm1
+  GeneticAlgorithm geneticAlgorithm;
+
+  /**
+   * Constructor. Generates the Island's random source population
+   * @param genotype
+   *   (Genotype) the Genotype whose Items the Chromosomes of this Island select from
+   * @param selector
+   *   (Selector) the Selector used to choose this Island's parents and survivors
+   * @param crossoverMethod1
+   *   (String) the crossover method for the children of the first parent population, for example "singlePointCrossover"
+   * @param crossoverMethod2
+   *   (String) the crossover method for the children of the second parent population, for example "randomCrossover"
+   * @param populationSize
+   *   (int) the number of Chromosomes of this Island
+   * @param crossoverRate
+   *   (double) the share of each generation that is made of children
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param selectBest
+   *   (int) the number of best Chromosomes that survive each generation unchanged
+   */
+  public Island(Genotype genotype, Selector selector, String crossoverMethod1, String crossoverMethod2, int populationSize, double crossoverRate, double mutationRate, int selectBest) {
+    this(genotype, selector, crossoverMethod1, crossoverMethod2, populationSize, crossoverRate, mutationRate, selectBest, new RandomStream());
+  }
+
+  /**
+   * Constructor for when the Island's source of randomness is provided. Each Island runs on its own thread, so each needs its own stream, for example one returned by IslandGeneticAlgorithm.split()
+   * @param genotype
+   *   (Genotype) the Genotype whose Items the Chromosomes of this Island select from
+   * @param selector
+   *   (Selector) the Selector used to choose this Island's parents and survivors. Its source of randomness is set to random
+   * @param crossoverMethod1
+   *   (String) the crossover method for the children of the first parent population, for example "singlePointCrossover"
+   * @param crossoverMethod2
+   *   (String) the crossover method for the children of the second parent population, for example "randomCrossover"
+   * @param populationSize
+   *   (int) the number of Chromosomes of this Island
+   * @param crossoverRate
+   *   (double) the share of each generation that is made of children
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param selectBest
+   *   (int) the number of best Chromosomes that survive each generation unchanged
+   * @param random
+   *   (Random) the Island's source of randomness. Must not be shared with another Island
+   */
+  public Island(Genotype genotype, Selector selector, String crossoverMethod1, String crossoverMethod2, int populationSize, double crossoverRate, double mutationRate, int selectBest, Random random) {
+    this.selector = selector;
+    this.crossover1 = CrossoverOperators.get(crossoverMethod1);
+    this.crossover2 = CrossoverOperators.get(crossoverMethod2);
+    this.populationSize = populationSize;
+    this.numberOfChildren = (int) (populationSize*crossoverRate);
+    this.mutationRate = mutationRate;
+    this.selectBest = selectBest;
+    this.geneticAlgorithm = new GeneticAlgorithm();
+    selector.setRandom(random);
+
+    // Generate the source population (completely random genes)
+    population = new Population(genotype);
+    population.setRandom(random);
+    population.generateRandom(populationSize);
+  }
+
+  /**
+   * Replaces this Island's Population with its next generation
+   */
+  public void evolve() {
+    population = geneticAlgorithm.nextGeneration(population, selector, crossover1, crossover2, populationSize, numberOfChildren, mutationRate, selectBest, 0);
+  }
+
+  /**
+   * Returns copies of the best Chromosomes of this Island. Copies are returned since the receiving Island will mutate them on another thread
+   * @param count
+   *   (int) the number of Chromosomes to return
+   * @return
+   *   (Chromosome[]) copies of the count best Chromosomes, best first
+   */
+  public Chromosome[] emigrants(int count) {
+    int[] best = population.topIndexes(count);
+
+    Chromosome[] emigrants = new Chromosome[best.length];
+    for (int i=0; i<emigrants.length; i++)
+      emigrants[i] = new Chromosome(population.get(best[i]));
+
+    return emigrants;
+  }
+
+  /**
+   * Replaces the worst Chromosomes of this Island with the immigrants
+   * @param immigrants
+   *   (Chromosome[]) the Chromosomes that join this Island, one for each Chromosome that leaves
+   */
+  public void immigrate(Chromosome[] immigrants) {
+    // The immigrants were scored with the same Genotype on their own Island, so their scores are kept
+    for (Chromosome immigrant : immigrants) {
+      population.remove(population.getWorstIndex());
+      population.addScored(immigrant);
+    }
+  }
+
+  /**
+   * Getter for the Island's current Population
+   * @return
+   *   (Population) the Island's current Population
+   */
+  public Population getPopulation() {
+    return population;
+  }
+
+  /**
+   * Getter for the best fitnessScore of the Island's current Population
+   * @return
+   *   (int) the best fitnessScore of the Island's current Population
+   */
+  public int getBestScore() {
+    return population.getBestScore();
+  }
+}
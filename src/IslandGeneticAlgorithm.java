@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Island model Genetic Algorithm. Instead of one large Population, N Islands (typically one per core) each evolve their own Population on their own thread with the generational algorithm of GeneticAlgorithm.algorithm1.
+ * Every migrationInterval generations each Island sends copies of its migrationCount best Chromosomes to the next Island of a ring, where they replace the worst Chromosomes. This spreads good genes between Islands while keeping the Islands different enough to avoid premature convergence.
+ * Migration is lock-free: each Island has a mailbox slot in an AtomicReferenceArray. A sender overwrites the slot of the next Island with its newest emigrants and a receiver empties its own slot with getAndSet, so no Island ever waits for another. If an Island has not collected its previous immigrants yet they are replaced by the newer ones.
+ * Since Islands run at their own pace, which immigrants an Island receives depends on thread timing, so unlike GeneticAlgorithm runs with a seeded RandomStream, island runs with migration are not exactly reproducible.
+ *
+ * @author willj
+ */
+public class IslandGeneticAlgorithm {
+  // The Islands, in ring order. Island i sends its emigrants to Island (i+1) % N
+  ArrayList<Island> islands;
+
+  // The number of generations between two migrations
+  int migrationInterval;
+
+  // The number of Chromosomes that each Island sends per migration
+  int migrationCount;
+
+  // Migration mailboxes. Slot i holds the latest emigrants sent to Island i that it has not collected yet, or null
+  AtomicReferenceArray<Chromosome[]> mailboxes;
+
+  // Set by the first Island that reaches the bestScoreTarget so that all other Islands stop
+  AtomicBoolean targetReached;
+
+  // The run's root source of randomness. Each Island gets its own stream split from it, so Islands never share or contend on a generator
+  RandomStream random;
+
+  /**
+   * Constructor
+   * @param migrationInterval
+   *   (int) the number of generations between two migrations. Must be at least 1
+   * @param migrationCount
+   *   (int) the number of best Chromosomes that each Island sends to the next Island per migration
+   */
+  public IslandGeneticAlgorithm(int migrationInterval, int migrationCount) {
+    this(migrationInterval, migrationCount, new RandomStream());
+  }
+
+  /**
+   * Constructor for when the run's root source of randomness is provided
+   * @param migrationInterval
+   *   (int) the number of generations between two migrations. Must be at least 1
+   * @param migrationCount
+   *   (int) the number of best Chromosomes that each Island sends to the next Island per migration
+   * @param random
+   *   (RandomStream) the root stream that the Islands' streams are split from, for example new RandomStream(seed)
+   */
+  public IslandGeneticAlgorithm(int migrationInterval, int migrationCount, RandomStream random) {
+    if (migrationInterval<1)
+      throw new IllegalArgumentException("migrationInterval must be at least 1.");
+
+    this.islands = new ArrayList<Island>();
+    this.migrationInterval = migrationInterval;
+    this.migrationCount = migrationCount;
+    this.random = random;
+  }
+
+  /**
+   * Returns a new stream for an Island, split from the root stream. Creating the Islands in the same order from the same seed gives each Island the same stream every run
+   * @return
+   *   (RandomStream) a stream that no other Island uses
+   */
+  public RandomStream split() {
+    return random.split();
+  }
+
+  /**
+   * Adds an Island to the end of the ring. Each Island gets its own thread when run() is called
+   * @param island
+   *   (Island) the Island to add
+   */
+  public void addIsland(Island island) {
+    islands.add(island);
+  }
+
+  /**
+   * Evolves all Islands in parallel until one of them reaches bestScoreTarget or maxGenerations generations have passed
+   * @param bestScoreTarget
+   *   (int) the fitnessScore at which the algorithm stops
+   * @param maxGenerations
+   *   (int) the largest number of generations each Island evolves, which prevents an infinite loop when bestScoreTarget cannot be reached
+   * @return
+   *   (int) the largest number of generations evolved by any Island
+   */
+  public int run(int bestScoreTarget, int maxGenerations) {
+    if (islands.isEmpty())
+      throw new IllegalArgumentException("There must be at least 1 Island.");
+
+    mailboxes = new AtomicReferenceArray<Chromosome[]>(islands.size());
+    targetReached = new AtomicBoolean(false);
+
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int i=0; i<islands.size(); i++) {
+      int index = i;
+      tasks.add(() -> evolveIsland(index, bestScoreTarget, maxGenerations));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(islands.size());
+    try {
+      int generations = 0;
+      for (Future<Integer> result : executor.invokeAll(tasks))
+        generations = Math.max(generations, result.get());
+      return generations;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while the Islands were evolving.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Evolves all Islands in parallel until one of them reaches bestScoreTarget
+   * @param bestScoreTarget
+   *   (int) the fitnessScore at which the algorithm stops
+   * @return
+   *   (int) the largest number of generations evolved by any Island
+   */
+  public int run(int bestScoreTarget) {
+    return run(bestScoreTarget, Integer.MAX_VALUE);
+  }
+
+  // The loop that runs on the thread of Island index. Returns the number of generations the Island evolved
+  int evolveIsland(int index, int bestScoreTarget, int maxGenerations) {
+    Island island = islands.get(index);
+    int next = (index + 1) % islands.size();
+    int generation = 0;
+
+    while (!targetReached.get() && island.getBestScore()<bestScoreTarget && generation<maxGenerations) {
+      island.evolve();
+      generation++;
+
+      // Migrate: publish our best to the next Island and take in whatever the previous Island sent us
+      if (generation % migrationInterval == 0 && islands.size() > 1) {
+        mailboxes.set(next, island.emigrants(migrationCount));
+
+        Chromosome[] immigrants = mailboxes.getAndSet(index, null);
+        if (immigrants != null)
+          island.immigrate(immigrants);
+      }
+    }
+
+    if (island.getBestScore()>=bestScoreTarget)
+      targetReached.set(true);
+
+    return generation;
+  }
+
+  /**
+   * Returns the best Chromosome of all Islands
+   * @return
+   *   (Chromosome) the Chromosome with the highest fitnessScore across all Islands
+   */
+  public Chromosome getBest() {
+    Chromosome best = null;
+    for (Island island : islands) {
+      Chromosome candidate = island.getPopulation().getBest();
+      if (best == null || candidate.getFitnessScore() > best.getFitnessScore())
+        best = candidate;
+    }
+    return best;
+  }
+
+  /**
+   * Getter for the Islands
+   * @return
+   *   (ArrayList<Island>) the Islands in ring order
+   */
+  public ArrayList<Island> getIslands() {
+    return islands;
+  }
+}
@@ -0,0 +1,374 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads the Items of a CSV file with the structure itemNum,value,cost (like data.csv) into int columns, for Genotype.addFromFile.
+ * The file is memory-mapped instead of read line by line, and the numbers are parsed straight from the mapped bytes, so no String is created per row. Large files are split into chunks at line boundaries and the chunks are parsed in parallel on a ForkJoinPool, each into its own columns, which are then joined in file order.
+ * If the first line is not a row of numbers it is a header and is ignored. Decimal numbers are cast to int (the fraction is dropped). Blank lines are skipped, and lines may end with \n or \r\n. Any other text results in an IllegalArgumentException naming the line.
+ *
+ * @author willj
+ */
+public class ItemFileLoader {
+  // Files smaller than this are parsed on one thread, and chunks are never smaller than this
+  static final int MIN_CHUNK_BYTES = 1 << 20;
+
+  // The largest chunk, so that every chunk fits in one MappedByteBuffer whatever the size of the file
+  static final int MAX_CHUNK_BYTES = 1 << 28;
+
+  // The file to read
+  Path path;
+
+  // The pool whose threads parse the chunks
+  ForkJoinPool pool;
+
+  // The parsed rows, set by load
+  int count;
+  int[] itemNums = new int[0];
+  int[] values = new int[0];
+  int[] costs = new int[0];
+
+  /**
+   * Constructor for when the pool is provided
+   * @param path
+   *   (String) the path to the CSV file
+   * @param pool
+   *   (ForkJoinPool) the pool whose threads parse the chunks
+   */
+  public ItemFileLoader(String path, ForkJoinPool pool) {
+    this.path = Paths.get(path);
+    this.pool = pool;
+  }
+
+  /**
+   * Constructor for when no pool is provided. Uses the common ForkJoinPool
+   * @param path
+   *   (String) the path to the CSV file
+   */
+  public ItemFileLoader(String path) {
+    this(path, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Reads and parses the file into the itemNums, values and costs columns
+   * @return
+   *   (int) the number of rows read
+   * @throws IOException
+   *   if the file cannot be read
+   */
+  public int load() throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long[] boundaries = chunkBoundaries(channel, size);
+
+      List<ChunkTask> tasks = new ArrayList<ChunkTask>();
+      for (int i=0; i<boundaries.length-1; i++) {
+        if (boundaries[i + 1]>boundaries[i])
+          tasks.add(new ChunkTask(channel.map(FileChannel.MapMode.READ_ONLY, boundaries[i], boundaries[i + 1] - boundaries[i]), boundaries[i], i == 0));
+      }
+
+      if (tasks.size()>1)
+        pool.invoke(new RecursiveAction() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected void compute() {
+            ForkJoinTask.invokeAll(tasks);
+          }
+        });
+      else
+        for (ChunkTask task : tasks)
+          task.compute();
+
+      // The first error in file order is reported, with its line number counted only now that it is needed
+      for (ChunkTask task : tasks) {
+        if (task.errorPosition>=0)
+          throw new IllegalArgumentException("Line " + lineNumber(channel, task.errorPosition) + " of " + path + " is not a row of itemNum,value,cost numbers.");
+      }
+
+      // Join the chunks' columns in file order
+      count = 0;
+      for (ChunkTask task : tasks)
+        count += task.count;
+      itemNums = new int[count];
+      values = new int[count];
+      costs = new int[count];
+      int row = 0;
+      for (ChunkTask task : tasks) {
+        System.arraycopy(task.itemNums, 0, itemNums, row, task.count);
+        System.arraycopy(task.values, 0, values, row, task.count);
+        System.arraycopy(task.costs, 0, costs, row, task.count);
+        row += task.count;
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Splits the file into chunks that each start at the beginning of a line
+   * @param channel
+   *   (FileChannel) the open file
+   * @param size
+   *   (long) the size of the file in bytes
+   * @return
+   *   (long[]) the start of each chunk followed by the size of the file
+   */
+  long[] chunkBoundaries(FileChannel channel, long size) throws IOException {
+    int chunks = (int) Math.max((size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES, Math.min(pool.getParallelism() * 4L, size / MIN_CHUNK_BYTES));
+    chunks = Math.max(1, chunks);
+
+    long[] boundaries = new long[chunks + 1];
+    boundaries[chunks] = size;
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    for (int i=1; i<chunks; i++) {
+      // Move each nominal boundary forward to just after the next \n, so that no line is split
+      long position = Math.max(boundaries[i - 1], size / chunks * i);
+      boundaries[i] = size;
+      search:
+      while (position<size) {
+        buffer.clear();
+        int read = channel.read(buffer, position);
+        if (read<=0)
+          break;
+        for (int b=0; b<read; b++) {
+          if (buffer.get(b) == '\n') {
+            boundaries[i] = position + b + 1;
+            break search;
+          }
+        }
+        position += read;
+      }
+    }
+    return boundaries;
+  }
+
+  // Counts the lines before a position of the file, for error messages
+  static long lineNumber(FileChannel channel, long position) throws IOException {
+    long line = 1;
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    for (long p=0; p<position; ) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), position - p));
+      int read = channel.read(buffer, p);
+      if (read<=0)
+        break;
+      for (int b=0; b<read; b++)
+        if (buffer.get(b) == '\n')
+          line++;
+      p += read;
+    }
+    return line;
+  }
+
+  /**
+   * Getter for the number of rows read
+   * @return
+   *   (int) the number of rows
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Getter for the itemNum column. Only the first getCount() entries are rows
+   * @return
+   *   (int[]) the itemNum of each row
+   */
+  public int[] getItemNums() {
+    return itemNums;
+  }
+
+  /**
+   * Getter for the value column. Only the first getCount() entries are rows
+   * @return
+   *   (int[]) the value of each row
+   */
+  public int[] getValues() {
+    return values;
+  }
+
+  /**
+   * Getter for the cost column. Only the first getCount() entries are rows
+   * @return
+   *   (int[]) the cost of each row
+   */
+  public int[] getCosts() {
+    return costs;
+  }
+
+  /**
+   * Parses the lines of one chunk into its own columns. On malformed text it records the file position of the line and stops
+   */
+  static class ChunkTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final MappedByteBuffer bytes;
+    final long start;
+    final boolean first;
+
+    int count;
+    int[] itemNums;
+    int[] values;
+    int[] costs;
+
+    // The file position of the first malformed line, or -1
+    long errorPosition = -1;
+
+    // The position of the next byte to parse, shared by the parsing methods
+    int position;
+
+    ChunkTask(MappedByteBuffer bytes, long start, boolean first) {
+      this.bytes = bytes;
+      this.start = start;
+      this.first = first;
+      // Rows of data.csv are about 8 bytes long. The columns grow if the estimate is too small
+      int capacity = Math.max(16, bytes.limit() / 8);
+      this.itemNums = new int[capacity];
+      this.values = new int[capacity];
+      this.costs = new int[capacity];
+    }
+
+    @Override
+    protected void compute() {
+      int limit = bytes.limit();
+      position = 0;
+
+      if (first) {
+        // Skip a UTF-8 byte order mark
+        if (limit>=3 && (bytes.get(0) & 0xFF) == 0xEF && (bytes.get(1) & 0xFF) == 0xBB && (bytes.get(2) & 0xFF) == 0xBF)
+          position = 3;
+        // The first line is a header if it does not start with a number
+        skipBlanks(limit);
+        if (position<limit && !startsNumber(bytes.get(position)))
+          skipLine(limit);
+      }
+
+      while (position<limit) {
+        int lineStart = position;
+        skipBlanks(limit);
+        if (position>=limit)
+          break;
+        byte b = bytes.get(position);
+        if (b == '\n' || b == '\r') {
+          // A blank line
+          skipLine(limit);
+          continue;
+        }
+
+        if (count == itemNums.length) {
+          int capacity = itemNums.length * 2;
+          itemNums = Arrays.copyOf(itemNums, capacity);
+          values = Arrays.copyOf(values, capacity);
+          costs = Arrays.copyOf(costs, capacity);
+        }
+
+        long itemNum = parseNumber(limit);
+        boolean valid = itemNum != Long.MIN_VALUE && expect(',', limit);
+        long value = valid ? parseNumber(limit) : Long.MIN_VALUE;
+        valid = value != Long.MIN_VALUE && expect(',', limit);
+        long cost = valid ? parseNumber(limit) : Long.MIN_VALUE;
+        valid = cost != Long.MIN_VALUE && endOfLine(limit);
+        if (!valid) {
+          errorPosition = start + lineStart;
+          return;
+        }
+
+        itemNums[count] = (int) itemNum;
+        values[count] = (int) value;
+        costs[count] = (int) cost;
+        count++;
+      }
+    }
+
+    // Whether a byte can start a number
+    static boolean startsNumber(byte b) {
+      return (b>='0' && b<='9') || b == '-' || b == '+' || b == '.';
+    }
+
+    // Skips spaces and tabs
+    void skipBlanks(int limit) {
+      while (position<limit && (bytes.get(position) == ' ' || bytes.get(position) == '\t'))
+        position++;
+    }
+
+    // Skips past the end of the current line
+    void skipLine(int limit) {
+      while (position<limit && bytes.get(position++) != '\n');
+    }
+
+    // Skips blanks and one expected separator. Returns false if the next byte is anything else
+    boolean expect(char separator, int limit) {
+      skipBlanks(limit);
+      if (position<limit && bytes.get(position) == separator) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    // Skips blanks and the end of the line. Returns false if there is text before it
+    boolean endOfLine(int limit) {
+      skipBlanks(limit);
+      if (position<limit && bytes.get(position) == '\r')
+        position++;
+      if (position>=limit)
+        return true;
+      if (bytes.get(position) == '\n') {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Parses a number with an optional sign and fraction, dropping the fraction
+     * @return
+     *   (long) the integer part, or Long.MIN_VALUE if there is no number or it does not fit in an int
+     */
+    long parseNumber(int limit) {
+      skipBlanks(limit);
+      boolean negative = false;
+      if (position<limit && (bytes.get(position) == '-' || bytes.get(position) == '+')) {
+        negative = bytes.get(position) == '-';
+        position++;
+      }
+
+      long number = 0;
+      int digits = 0;
+      while (position<limit) {
+        int digit = bytes.get(position) - '0';
+        if (digit<0 || digit>9)
+          break;
+        number = number * 10 + digit;
+        if (number>(long) Integer.MAX_VALUE + 1)
+          return Long.MIN_VALUE;
+        digits++;
+        position++;
+      }
+
+      // The fraction is dropped, like a cast to int
+      if (position<limit && bytes.get(position) == '.') {
+        position++;
+        while (position<limit && bytes.get(position)>='0' && bytes.get(position)<='9') {
+          digits++;
+          position++;
+        }
+      }
+
+      if (digits == 0)
+        return Long.MIN_VALUE;
+      number = negative ? -number : number;
+      return number>Integer.MAX_VALUE ? Long.MIN_VALUE : number;
+    }
+  }
+}
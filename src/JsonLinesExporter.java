@@ -0,0 +1,49 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A MetricsExporter that appends each snapshot to a file as one JSON object per line (JSON Lines), with the generations and evaluations per second since the previous snapshot. Each line is flushed, so the file can be followed while a run is going.
+ *
+ * @author willj
+ */
+public class JsonLinesExporter implements MetricsExporter, Closeable {
+  // The file the lines are appended to
+  BufferedWriter writer;
+
+  // The previously exported snapshot, for the rates
+  Metrics.Snapshot previous;
+
+  /**
+   * Constructor. Opens the file for appending, creating it if it does not exist
+   * @param path
+   *   (String) the path of the file
+   * @throws IOException
+   *   if the file cannot be opened
+   */
+  public JsonLinesExporter(String path) throws IOException {
+    this.writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  @Override
+  public synchronized void export(Metrics.Snapshot snapshot) {
+    try {
+      writer.write(snapshot.toJson(previous));
+      writer.newLine();
+      writer.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    previous = snapshot;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    writer.close();
+  }
+}
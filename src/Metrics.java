@@ -0,0 +1,234 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and Histograms of the hot paths of Genetic Algorithm runs, to watch production runs without slowing them down.
+ * A Metrics is attached to a Genotype with Genotype.setMetrics, and every run scoring with that Genotype records into it: the Genotype counts the full fitness evaluations and the genes flipped by mutation, and GeneticAlgorithm.nextGeneration, GenerationArena and SteadyStateEngine add the time of their selection, crossover, evaluation and mutation phases and record the wall time and the allocated bytes of every generation. SteadyStateEngine only records whole generations, since its steps are too short to time their phases without slowing them down. Without a Metrics (the default) each of these places costs one null check.
+ * The counters are LongAdders, which threads update without contending on one value, so Islands and parallel trials can share a Metrics. The Histograms are updated under a lock, once per generation.
+ * The metrics are read with snapshot(), or handed to a MetricsExporter periodically with startExporting, for example to a JsonLinesExporter that appends one JSON object per line to a file.
+ *
+ * @author willj
+ */
+public class Metrics {
+  // Counted by Genotype
+  public final LongAdder evaluations = new LongAdder();
+  public final LongAdder mutationFlips = new LongAdder();
+
+  // Counted by the generational algorithms. Phase times are in nanoseconds
+  public final LongAdder generations = new LongAdder();
+  public final LongAdder selectionNanos = new LongAdder();
+  public final LongAdder crossoverNanos = new LongAdder();
+  public final LongAdder evaluationNanos = new LongAdder();
+  public final LongAdder mutationNanos = new LongAdder();
+  public final LongAdder allocatedBytes = new LongAdder();
+
+  // The wall time and the bytes allocated by the thread of each generation. Both are guarded by generationNanos, not by this, so that reading them never waits for startExporting or stopExporting
+  final Histogram generationNanos = new Histogram();
+  final Histogram generationBytes = new Histogram();
+
+  // Runs the periodic exports, null while not exporting
+  ScheduledExecutorService exporting;
+  MetricsExporter exporter;
+
+  // The first exception thrown by a periodic export, rethrown by stopExporting. Exports continue after a failure, so a passing problem such as a full disk only loses the snapshots it failed on
+  volatile RuntimeException exportFailure;
+
+  // The System.nanoTime() at creation, from which a first snapshot's rates are calculated
+  final long createdNanos = System.nanoTime();
+
+  // Reads the bytes allocated by a thread, or null if the JVM cannot
+  static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+  static com.sun.management.ThreadMXBean allocationBean() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) bean;
+      if (allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled())
+        return allocation;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of bytes the calling thread has allocated so far
+   * @return
+   *   (long) the allocated bytes, or 0 if the JVM cannot measure them
+   */
+  public static long threadAllocatedBytes() {
+    return ALLOCATION == null ? 0 : ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Adds the time since a mark to a phase counter and returns the new mark, so that consecutive phases are timed with one System.nanoTime() each
+   * @param phase
+   *   (LongAdder) the phase counter, for example selectionNanos
+   * @param mark
+   *   (long) the System.nanoTime() at the start of the phase
+   * @return
+   *   (long) the System.nanoTime() at the end of the phase
+   */
+  public long lap(LongAdder phase, long mark) {
+    long now = System.nanoTime();
+    phase.add(now - mark);
+    return now;
+  }
+
+  /**
+   * Records a finished generation
+   * @param startNanos
+   *   (long) the System.nanoTime() at the start of the generation
+   * @param startBytes
+   *   (long) the threadAllocatedBytes() at the start of the generation
+   */
+  public void endGeneration(long startNanos, long startBytes) {
+    long nanos = System.nanoTime() - startNanos;
+    long bytes = threadAllocatedBytes() - startBytes;
+    generations.increment();
+    allocatedBytes.add(bytes);
+    synchronized (generationNanos) {
+      generationNanos.record(nanos);
+      generationBytes.record(bytes);
+    }
+  }
+
+  /**
+   * Reads all metrics at once
+   * @return
+   *   (Snapshot) the current values
+   */
+  public Snapshot snapshot() {
+    return new Snapshot(this);
+  }
+
+  /**
+   * Hands a snapshot to exporter every period until stopExporting is called. The exports run on their own daemon thread, so they never delay a run. The first export that throws is reported to System.err and rethrown by stopExporting
+   * @param exporter
+   *   (MetricsExporter) receives the snapshots
+   * @param period
+   *   (long) the time between two exports
+   * @param unit
+   *   (TimeUnit) the unit of period
+   */
+  public synchronized void startExporting(MetricsExporter exporter, long period, TimeUnit unit) {
+    if (exporting != null)
+      throw new IllegalStateException("The metrics are already being exported.");
+
+    this.exporter = exporter;
+    exportFailure = null;
+    exporting = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "metrics-exporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // An exception escaping the task would silently cancel every later export, so it is caught and kept
+    exporting.scheduleAtFixedRate(() -> {
+      try {
+        exporter.export(snapshot());
+      } catch (RuntimeException e) {
+        if (exportFailure == null) {
+          exportFailure = e;
+          System.err.println("Exporting the metrics failed: " + e);
+        }
+      }
+    }, period, period, unit);
+  }
+
+  /**
+   * Stops the periodic exports and hands a last snapshot to the exporter, so that the end of a run is always exported. Throws the first exception of the periodic exports, if one failed
+   */
+  public synchronized void stopExporting() {
+    if (exporting == null)
+      return;
+    exporting.shutdown();
+    try {
+      exporting.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    MetricsExporter exporter = this.exporter;
+    exporting = null;
+    this.exporter = null;
+    exporter.export(snapshot());
+
+    RuntimeException failure = exportFailure;
+    exportFailure = null;
+    if (failure != null)
+      throw failure;
+  }
+
+  /**
+   * The values of a Metrics at one moment. Rates such as generations per second are calculated between two snapshots, see toJson
+   */
+  public static class Snapshot {
+    public final long timeMillis;
+    public final long nanoTime;
+    final long createdNanos;
+    public final long evaluations;
+    public final long mutationFlips;
+    public final long generations;
+    public final long selectionNanos;
+    public final long crossoverNanos;
+    public final long evaluationNanos;
+    public final long mutationNanos;
+    public final long allocatedBytes;
+
+    // Percentiles of the wall time and the allocated bytes per generation
+    public final long generationNanosP50;
+    public final long generationNanosP99;
+    public final long generationNanosMax;
+    public final long generationBytesP50;
+    public final long generationBytesP99;
+    public final long generationBytesMax;
+
+    Snapshot(Metrics metrics) {
+      timeMillis = System.currentTimeMillis();
+      nanoTime = System.nanoTime();
+      createdNanos = metrics.createdNanos;
+      evaluations = metrics.evaluations.sum();
+      mutationFlips = metrics.mutationFlips.sum();
+      generations = metrics.generations.sum();
+      selectionNanos = metrics.selectionNanos.sum();
+      crossoverNanos = metrics.crossoverNanos.sum();
+      evaluationNanos = metrics.evaluationNanos.sum();
+      mutationNanos = metrics.mutationNanos.sum();
+      allocatedBytes = metrics.allocatedBytes.sum();
+      synchronized (metrics.generationNanos) {
+        boolean empty = metrics.generationNanos.getCount() == 0;
+        generationNanosP50 = empty ? 0 : metrics.generationNanos.percentile(50);
+        generationNanosP99 = empty ? 0 : metrics.generationNanos.percentile(99);
+        generationNanosMax = empty ? 0 : metrics.generationNanos.getMax();
+        generationBytesP50 = empty ? 0 : metrics.generationBytes.percentile(50);
+        generationBytesP99 = empty ? 0 : metrics.generationBytes.percentile(99);
+        generationBytesMax = empty ? 0 : metrics.generationBytes.getMax();
+      }
+    }
+
+    /**
+     * Returns the snapshot as a JSON object on one line, with the rates since a previous snapshot
+     * @param previous
+     *   (Snapshot) the previous snapshot, or null to calculate the rates since the Metrics was created
+     * @return
+     *   (String) the JSON object
+     */
+    public String toJson(Snapshot previous) {
+      // Without a previous snapshot the rates are those since the Metrics was created, when every counter was 0
+      double seconds = (nanoTime - (previous == null ? createdNanos : previous.nanoTime)) / 1e9;
+      long previousGenerations = previous == null ? 0 : previous.generations;
+      long previousEvaluations = previous == null ? 0 : previous.evaluations;
+      double generationsPerSecond = seconds>0 ? (generations - previousGenerations) / seconds : 0;
+      double evaluationsPerSecond = seconds>0 ? (evaluations - previousEvaluations) / seconds : 0;
+      return String.format(Locale.ROOT,
+          "{\"timeMillis\": %d, \"generations\": %d, \"generationsPerSecond\": %.1f, \"evaluations\": %d, \"evaluationsPerSecond\": %.1f, \"mutationFlips\": %d, "
+          + "\"selectionNanos\": %d, \"crossoverNanos\": %d, \"evaluationNanos\": %d, \"mutationNanos\": %d, \"allocatedBytes\": %d, "
+          + "\"generationNanos\": {\"p50\": %d, \"p99\": %d, \"max\": %d}, \"generationBytes\": {\"p50\": %d, \"p99\": %d, \"max\": %d}}",
+          timeMillis, generations, generationsPerSecond, evaluations, evaluationsPerSecond, mutationFlips,
+          selectionNanos, crossoverNanos, evaluationNanos, mutationNanos, allocatedBytes,
+          generationNanosP50, generationNanosP99, generationNanosMax, generationBytesP50, generationBytesP99, generationBytesMax);
+    }
+  }
+}
@@ -0,0 +1,13 @@
+/**
+ * Receives the snapshots of a Metrics, see Metrics.startExporting. Exports run on the exporting thread of the Metrics, one at a time.
+ *
+ * @author willj
+ */
+public interface MetricsExporter {
+  /**
+   * Exports one snapshot
+   * @param snapshot
+   *   (Metrics.Snapshot) the values of the Metrics
+   */
+  void export(Metrics.Snapshot snapshot);
+}
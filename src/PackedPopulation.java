@@ -0,0 +1,435 @@
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A Population stored as a struct of arrays. Instead of an ArrayList of Chromosome objects, each with its own gene array and object header, the bit-packed genes of all Chromosomes are kept back to back in one long[] and their fitness scores in a parallel int[] column.
+ * Chromosome i owns the words [i * wordsPerChromosome, (i+1) * wordsPerChromosome) of genes and fitnessScores[i]. Sweeps over a whole generation (scoring, summing, selecting) therefore read memory sequentially instead of following a pointer per Chromosome.
+ * Chromosomes are addressed by index. Crossover, mutation and selection work on indexes, and Chromosome objects are only created when toChromosome is called.
+ * The capacity is fixed when the PackedPopulation is created, so nothing is allocated while it is filled and cleared again.
+ *
+ * @author willj
+ */
+public class PackedPopulation {
+  // The Genotype used to score the Chromosomes
+  Genotype genotype;
+
+  // The number of genes of each Chromosome, and the number of words each Chromosome takes in genes
+  int numberOfGenes;
+  int wordsPerChromosome;
+
+  // The genes of all Chromosomes, wordsPerChromosome words per Chromosome
+  long[] genes;
+
+  // The fitness score of each Chromosome, parallel to the Chromosomes in genes
+  int[] fitnessScores;
+
+  // The packed value and cost sums of each Chromosome (see Genotype.packSums), written by evaluate. They let mutate update a fitness score from only the flipped genes
+  long[] sums;
+
+  // The number of Chromosomes currently stored, and the largest number that can be stored
+  int size;
+  int capacity;
+
+  // Statistics of the fitness scores, kept up to date like those of Population. -1 indexes while empty
+  int minScore;
+  int sumScores;
+  int bestIndex;
+  int worstIndex;
+
+  // Looks up fitness scores for Population.topIndexes. Created once so that topIndexes does not allocate
+  IntUnaryOperator fitnessScoreOf;
+
+  /**
+   * Constructor. Allocates the gene and fitness columns for capacity Chromosomes
+   * @param genotype
+   *   (Genotype) the Genotype used to score the Chromosomes. Its number of Items is the number of genes of each Chromosome
+   * @param capacity
+   *   (int) the largest number of Chromosomes that can be stored
+   */
+  public PackedPopulation(Genotype genotype, int capacity) {
+    if (genotype.genesCount()<4)
+      throw new IllegalArgumentException("There must be at least 4 Items in the Genotype.");
+
+    this.genotype = genotype;
+    this.numberOfGenes = genotype.genesCount();
+    this.wordsPerChromosome = Chromosome.wordCount(numberOfGenes);
+    this.capacity = capacity;
+    this.genes = new long[capacity * wordsPerChromosome];
+    this.fitnessScores = new int[capacity];
+    this.sums = new long[capacity];
+    this.fitnessScoreOf = index -> fitnessScores[index];
+    clear();
+  }
+
+  /**
+   * Removes all Chromosomes. The columns are kept, so the PackedPopulation can be filled again without allocation
+   */
+  public void clear() {
+    size = 0;
+    minScore = 0;
+    sumScores = 0;
+    bestIndex = -1;
+    worstIndex = -1;
+  }
+
+  /**
+   * Reserves the next free index. Its genes and fitness score are left as they were and must be written before they are read, for example by one of the crossover methods followed by evaluate
+   * @return
+   *   (int) the index of the new Chromosome
+   */
+  public int allocate() {
+    if (size == capacity)
+      throw new IllegalArgumentException("The PackedPopulation is full, its capacity is " + capacity + ".");
+    return size++;
+  }
+
+  /**
+   * Copies the genes of a Chromosome to the next free index and scores it
+   * @param chromosome
+   *   (Chromosome) the Chromosome to copy. Must have as many genes as the Genotype has Items
+   * @return
+   *   (int) the index of the copy
+   */
+  public int add(Chromosome chromosome) {
+    if (chromosome.geneCount() != numberOfGenes)
+      throw new IllegalArgumentException("Chromosomes should have equal geneCount.");
+
+    int index = allocate();
+    System.arraycopy(chromosome.genes, 0, genes, offset(index), wordsPerChromosome);
+    evaluate(index);
+    updateStatistics(index);
+    return index;
+  }
+
+  /**
+   * Copies a Chromosome of another (or this) PackedPopulation to the next free index, keeping its fitness score
+   * @param source
+   *   (PackedPopulation) the PackedPopulation holding the Chromosome. Must use the same Genotype
+   * @param sourceIndex
+   *   (int) the index of the Chromosome in source
+   * @return
+   *   (int) the index of the copy
+   */
+  public int addCopy(PackedPopulation source, int sourceIndex) {
+    int index = allocate();
+    System.arraycopy(source.genes, source.offset(sourceIndex), genes, offset(index), wordsPerChromosome);
+    fitnessScores[index] = source.fitnessScores[sourceIndex];
+    sums[index] = source.sums[sourceIndex];
+    updateStatistics(index);
+    return index;
+  }
+
+  /**
+   * Overwrites a stored Chromosome with a copy of a Chromosome of another PackedPopulation, keeping its fitness score, and updates sumScores and the best in place. Nothing is allocated and the other Chromosomes are not moved.
+   * minScore and worstIndex are only updated if the copy is the new worst. If the copy replaces the worst with a better Chromosome the worst is unknown without a pass over the scores, so the caller must set it with setWorst (SteadyStateEngine tracks it with a heap) or call calculateStatistics()
+   * @param index
+   *   (int) the index of the Chromosome to overwrite
+   * @param source
+   *   (PackedPopulation) the PackedPopulation holding the copied Chromosome. Must use the same Genotype and must not be this one
+   * @param sourceIndex
+   *   (int) the index of the copied Chromosome in source
+   */
+  public void replace(int index, PackedPopulation source, int sourceIndex) {
+    int oldScore = fitnessScores[index];
+    int fitnessScore = source.fitnessScores[sourceIndex];
+    System.arraycopy(source.genes, source.offset(sourceIndex), genes, offset(index), wordsPerChromosome);
+    fitnessScores[index] = fitnessScore;
+    sums[index] = source.sums[sourceIndex];
+    sumScores += fitnessScore - oldScore;
+
+    if (fitnessScore>fitnessScores[bestIndex])
+      bestIndex = index;
+    else if (index == bestIndex && fitnessScore<oldScore) {
+      // The best got worse, so another Chromosome may now be the best
+      for (int i=0; i<size; i++)
+        if (fitnessScores[i]>fitnessScores[bestIndex])
+          bestIndex = i;
+    }
+
+    if (fitnessScore<minScore) {
+      minScore = fitnessScore;
+      worstIndex = index;
+    }
+  }
+
+  /**
+   * Sets the worst Chromosome, for callers that track it themselves, see replace
+   * @param index
+   *   (int) the index of the Chromosome with the lowest fitness score
+   */
+  public void setWorst(int index) {
+    worstIndex = index;
+    minScore = fitnessScores[index];
+  }
+
+  /**
+   * Adds count Chromosomes with random genes and scores them
+   * @param count
+   *   (int) the number of Chromosomes to add
+   */
+  public void generateRandom(int count) {
+    generateRandom(count, ThreadLocalRandom.current());
+  }
+
+  /**
+   * Adds count Chromosomes with random genes and scores them
+   * @param count
+   *   (int) the number of Chromosomes to add
+   * @param random
+   *   (Random) the source of randomness
+   */
+  public void generateRandom(int count, Random random) {
+    int from = size;
+    for (int i=0; i<count; i++)
+      Chromosome.setRandomGenes(genes, offset(allocate()), numberOfGenes, random);
+    
+    // Score the new Chromosomes as one batch
+    evaluate(from, size);
+    calculateStatistics();
+  }
+
+  /**
+   * Returns the index of the first word of a Chromosome in genes
+   * @param index
+   *   (int) the index of the Chromosome
+   * @return
+   *   (int) the index of the Chromosome's first word
+   */
+  int offset(int index) {
+    return index * wordsPerChromosome;
+  }
+
+  /**
+   * Calculates and stores the fitness score and the value and cost sums of a Chromosome. The statistics are not updated, see calculateStatistics()
+   * @param index
+   *   (int) the index of the Chromosome
+   * @return
+   *   (int) the fitness score
+   */
+  public int evaluate(int index) {
+    sums[index] = genotype.calculateSums(genes, offset(index), wordsPerChromosome);
+    fitnessScores[index] = genotype.scoreFromSums(sums[index]);
+    return fitnessScores[index];
+  }
+
+  /**
+   * Calculates and stores the fitness scores and the value and cost sums of the Chromosomes [from, to) in one batch pass, see Genotype.calculateFitness(genes, wordCount, from, to, sums, scores). The statistics are not updated, see calculateStatistics()
+   * @param from
+   *   (int) the index of the first Chromosome
+   * @param to
+   *   (int) the index after the last Chromosome
+   */
+  public void evaluate(int from, int to) {
+    genotype.calculateFitness(genes, wordsPerChromosome, from, to, sums, fitnessScores);
+  }
+
+  /**
+   * Calculates the fitness scores of all Chromosomes and recalculates the statistics
+   */
+  public void setFitnessScores() {
+    evaluate(0, size);
+    calculateStatistics();
+  }
+
+  // Includes the Chromosome at index, which must be the last one added, in the statistics
+  void updateStatistics(int index) {
+    int fitnessScore = fitnessScores[index];
+    sumScores += fitnessScore;
+
+    if (size == 1) {
+      minScore = fitnessScore;
+      bestIndex = index;
+      worstIndex = index;
+      return;
+    }
+
+    if (fitnessScore<minScore) {
+      minScore = fitnessScore;
+      worstIndex = index;
+    }
+    if (fitnessScore>fitnessScores[bestIndex])
+      bestIndex = index;
+  }
+
+  /**
+   * Recalculates minScore, sumScores, best and worst in one sequential pass over the fitness column
+   */
+  public void calculateStatistics() {
+    sumScores = 0;
+    minScore = 0;
+    bestIndex = -1;
+    worstIndex = -1;
+
+    for (int i=0; i<size; i++) {
+      int fitnessScore = fitnessScores[i];
+      sumScores += fitnessScore;
+
+      if (i == 0 || fitnessScore<minScore) {
+        minScore = fitnessScore;
+        worstIndex = i;
+      }
+      if (i == 0 || fitnessScore>fitnessScores[bestIndex])
+        bestIndex = i;
+    }
+  }
+
+  /**
+   * Writes two children of two parents with a crossover operator
+   * @param crossover
+   *   (CrossoverOperator) the crossover operator
+   * @param parents
+   *   (PackedPopulation) the PackedPopulation holding the parents. It must not be this one, so that no child overwrites a parent
+   * @param parent1
+   *   (int) the index of the first parent in parents
+   * @param parent2
+   *   (int) the index of the second parent in parents
+   * @param child1
+   *   (int) the index of the first child in this PackedPopulation
+   * @param child2
+   *   (int) the index of the second child in this PackedPopulation
+   * @param random
+   *   (Random) the source of randomness, for operators that need it
+   */
+  public void crossover(CrossoverOperator crossover, PackedPopulation parents, int parent1, int parent2, int child1, int child2, Random random) {
+    crossover.crossover(parents.genes, parents.offset(parent1), parents.genes, parents.offset(parent2), genes, offset(child1), genes, offset(child2), numberOfGenes, random);
+  }
+
+  /**
+   * Flips each gene of a Chromosome with a chance mutationRate and updates its fitness score from only the flipped genes. The Chromosome must have been scored with evaluate since its genes were last written, for example by crossover. The statistics are not updated, see calculateStatistics()
+   * @param index
+   *   (int) the index of the Chromosome
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param random
+   *   (Random) the source of randomness
+   */
+  public void mutate(int index, double mutationRate, Random random) {
+    sums[index] = Chromosome.mutate(genes, offset(index), numberOfGenes, mutationRate, random, genotype, sums[index]);
+    fitnessScores[index] = genotype.scoreFromSums(sums[index]);
+  }
+
+  /**
+   * Mutates every Chromosome, updating the fitness scores from the flipped genes, and recalculates the statistics
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   */
+  public void mutate(double mutationRate) {
+    mutate(mutationRate, ThreadLocalRandom.current());
+  }
+
+  /**
+   * Mutates every Chromosome, updating the fitness scores from the flipped genes, and recalculates the statistics
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param random
+   *   (Random) the source of randomness
+   */
+  public void mutate(double mutationRate, Random random) {
+    for (int i=0; i<size; i++)
+      mutate(i, mutationRate, random);
+    calculateStatistics();
+  }
+
+  /**
+   * Fills heap with the indexes of the count best Chromosomes, best first. See Population.topIndexes
+   * @param count
+   *   (int) the number of indexes
+   * @param heap
+   *   (int[]) receives the indexes. Must have room for min(count, size()) indexes
+   * @return
+   *   (int[]) heap
+   */
+  public int[] topIndexes(int count, int[] heap) {
+    return Population.topIndexes(fitnessScoreOf, size, count, heap);
+  }
+
+  /**
+   * Returns the gene value (0 or 1) of a Chromosome
+   * @param index
+   *   (int) the index of the Chromosome
+   * @param gene
+   *   (int) the index of the gene
+   * @return
+   *   (int) the gene value
+   */
+  public int getGene(int index, int gene) {
+    return (int) (genes[offset(index) + (gene >>> 6)] >>> gene) & 1;
+  }
+
+  /**
+   * Returns whether a Chromosome has the same genes as a Chromosome of another (or this) PackedPopulation
+   * @param index
+   *   (int) the index of the Chromosome
+   * @param other
+   *   (PackedPopulation) the PackedPopulation holding the other Chromosome. Must use the same Genotype
+   * @param otherIndex
+   *   (int) the index of the other Chromosome in other
+   * @return
+   *   (boolean) true if every gene is equal
+   */
+  public boolean sameGenes(int index, PackedPopulation other, int otherIndex) {
+    int offset = offset(index);
+    int otherOffset = other.offset(otherIndex);
+    for (int w=0; w<wordsPerChromosome; w++)
+      if (genes[offset + w] != other.genes[otherOffset + w])
+        return false;
+    return true;
+  }
+
+  /**
+   * Creates a Chromosome object with a copy of the genes and the fitness score of a stored Chromosome
+   * @param index
+   *   (int) the index of the Chromosome
+   * @return
+   *   (Chromosome) the new Chromosome
+   */
+  public Chromosome toChromosome(int index) {
+    Chromosome chromosome = new Chromosome(numberOfGenes);
+    System.arraycopy(genes, offset(index), chromosome.genes, 0, wordsPerChromosome);
+    chromosome.setFitnessScore(fitnessScores[index]);
+    chromosome.sums = sums[index];
+    chromosome.sumsValid = true;
+    return chromosome;
+  }
+
+  public int getFitnessScore(int index) {
+    return fitnessScores[index];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public Genotype getGenotype() {
+    return genotype;
+  }
+
+  public int getMinScore() {
+    return minScore;
+  }
+
+  public int getSumScores() {
+    return sumScores;
+  }
+
+  public double getAverageScore() {
+    return (double) sumScores / size;
+  }
+
+  public int getBestIndex() {
+    return bestIndex;
+  }
+
+  public int getBestScore() {
+    return fitnessScores[bestIndex];
+  }
+
+  public int getWorstIndex() {
+    return worstIndex;
+  }
+}
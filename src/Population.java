@@ -1,6 +1,9 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
 
 public class Population {
   // We keep the ArrayList public so we can easily use iterator
@@ -11,28 +14,52 @@ public class Population {
   public int minScore;
   public int sumScores;
   
+  // Indexes of the Chromosomes with the highest and the lowest fitness score. Like minScore and sumScores they are updated as Chromosomes are added and removed, so the best and worst Chromosomes are found in O(1) without sorting. -1 while the population is empty
+  int bestIndex;
+  int worstIndex;
+  
+  // Scores batches of Chromosomes in parallel. If null fitness scores are calculated on the calling thread
+  PopulationEvaluator evaluator;
+  
+  // The source of randomness for random genes, randomCrossover and mutation. If null each thread uses its ThreadLocalRandom. Set a seeded RandomStream to make runs reproducible
+  Random random;
+  
   public Population(Genotype genotype){
+    this(genotype, null);
+  }
+  
+  public Population(Genotype genotype, PopulationEvaluator evaluator){
     population = new ArrayList<Chromosome>();
     this.genotype = genotype;
+    this.evaluator = evaluator;
     minScore = 0;
     sumScores = 0;
+    bestIndex = -1;
+    worstIndex = -1;
   }
   
-  // If you update this, update add(Population population)
+  // If you update this, update add(Population population) and addScored(Chromosome chromosome)
   public void add(Chromosome chromosome) {
-    chromosome.setFitnessScore(genotype.calculateFitness(chromosome));
+    chromosome.evaluate(genotype);
     population.add(chromosome);
-    compareUpdateMinScore(chromosome.fitnessScore);
-    addSumScores(chromosome.fitnessScore);
+    updateStatistics(population.size() - 1);
   }
   
   public void add(Population population) {
     // Since a population will already have fitness scores calculated we can skip setFitnessScore. This is why we don't simply use add(Chromosome)
-    for (int i=0; i<population.size(); i++) {
-      this.population.add(population.get(i));
-      compareUpdateMinScore(population.get(i).getFitnessScore());
-      addSumScores(population.get(i).getFitnessScore());
-    }
+    for (int i=0; i<population.size(); i++)
+      addScored(population.get(i));
+  }
+  
+  // Appends a Chromosome that already has a valid fitness score, for example one selected from another population, without calculating it again
+  public void addScored(Chromosome chromosome) {
+    population.add(chromosome);
+    updateStatistics(population.size() - 1);
+  }
+  
+  // Appends a Chromosome without calculating its fitness score. The fitness scores and the statistics (minScore, sumScores, best and worst) are only valid again after setFitnessScores()
+  public void addUnscored(Chromosome chromosome) {
+    population.add(chromosome);
   }
   
   public Iterator<Chromosome> iterator() {
@@ -40,14 +67,26 @@ public class Population {
     return iterator;
   }
   
-  public void compareUpdateMinScore(int fitnessScore) {
-    // If we have not had any chromosomes with fitnessScores minScore will be 0
-    // In this case we should set minScore to this score
-    if (this.minScore == 0 || fitnessScore > 0)
+  // Includes the Chromosome at index, which must be the last one added, in minScore, sumScores, best and worst
+  void updateStatistics(int index) {
+    int fitnessScore = population.get(index).fitnessScore;
+    addSumScores(fitnessScore);
+    
+    // The first Chromosome is both the best and the worst
+    if (population.size() == 1) {
       setMinScore(fitnessScore);
+      bestIndex = index;
+      worstIndex = index;
+      return;
+    }
     
-    if (fitnessScore<this.minScore)
+    // Ties keep the earlier Chromosome
+    if (fitnessScore<this.minScore) {
       setMinScore(fitnessScore);
+      worstIndex = index;
+    }
+    if (fitnessScore>population.get(bestIndex).fitnessScore)
+      bestIndex = index;
   }
   
   public void setMinScore(int fitnessScore) {
@@ -71,24 +110,39 @@ public class Population {
   }
   
   public void remove(int index) {
-    boolean wasMin = (population.get(index).fitnessScore == minScore);
+    int fitnessScore = population.get(index).fitnessScore;
     population.remove(index);
-    if (wasMin)
-      calculateSetMinScore();
-  }
-  
-  public void calculateSetMinScore() {
-    setMinScore(0);
+    sumScores -= fitnessScore;
     
-    for (Chromosome c : this.population)
-      compareUpdateMinScore(c.getFitnessScore());
+    // Only removing the best or the worst Chromosome requires a search for the new one. Otherwise the Chromosomes after index just moved down by one
+    if (index == bestIndex || index == worstIndex) {
+      calculateStatistics();
+      return;
+    }
+    if (bestIndex>index)
+      bestIndex--;
+    if (worstIndex>index)
+      worstIndex--;
   }
   
-  public void calculateSetSumScores() {
+  // Recalculates minScore, sumScores, best and worst from the fitness scores of all Chromosomes in index order
+  public void calculateStatistics() {
     this.sumScores = 0;
+    this.minScore = 0;
+    this.bestIndex = -1;
+    this.worstIndex = -1;
     
-    for (Chromosome c : this.population)
-      this.sumScores += c.getFitnessScore();
+    for (int i=0; i<population.size(); i++) {
+      int fitnessScore = population.get(i).fitnessScore;
+      this.sumScores += fitnessScore;
+      
+      if (i == 0 || fitnessScore<this.minScore) {
+        this.minScore = fitnessScore;
+        this.worstIndex = i;
+      }
+      if (i == 0 || fitnessScore>population.get(bestIndex).fitnessScore)
+        this.bestIndex = i;
+    }
   }
   
   public Genotype getGenotype() {
@@ -99,18 +153,45 @@ public class Population {
     return population.get(index);
   }
   
+  public PopulationEvaluator getEvaluator() {
+    return this.evaluator;
+  }
+  
+  public void setEvaluator(PopulationEvaluator evaluator) {
+    this.evaluator = evaluator;
+  }
+  
+  // The Population's source of randomness, or the calling thread's ThreadLocalRandom if none was set
+  public Random getRandom() {
+    return random != null ? random : ThreadLocalRandom.current();
+  }
+  
+  public void setRandom(Random random) {
+    this.random = random;
+  }
+  
+  // Calculates the fitness scores of all Chromosomes, with the evaluator if there is one, and recalculates minScore and sumScores
   public void setFitnessScores() {
-    for (Chromosome c : population)
-      c.setFitnessScore(genotype.calculateFitness(c));      
+    if (evaluator != null) {
+      evaluator.evaluate(this);
+      return;
+    }
+    
+    // Score all Chromosomes in one batch pass
+    genotype.calculateFitness(population, 0, population.size());
+    
+    calculateStatistics();
   }
   
+  // Sorting moves the best and worst Chromosomes, so their indexes are found again
   public void sort() {
     Collections.sort(this.population);
+    calculateStatistics();
   }
   
   public void sortDescending() {
-    this.sort();
-    Collections.reverse(this.population);
+    Collections.sort(this.population, Collections.reverseOrder());
+    calculateStatistics();
   }
   
   public void print() {
@@ -122,54 +203,60 @@ public class Population {
     return this.getGenotype().genesCount();
   }
   
+  // Resolves the crossover method by name (see CrossoverOperators) and crosses over each pair of Chromosomes. To cross over many populations resolve the operator once and use generateChildren(CrossoverOperator)
   public Population generateChildren(String crossoverMethod) {
+    return generateChildren(CrossoverOperators.get(crossoverMethod));
+  }
+  
+  // Crosses over each pair of Chromosomes (i, i+1) into two children and returns them as a scored Population
+  public Population generateChildren(CrossoverOperator crossover) {
+    Population childPopulation = generateUnscoredChildren(crossover);
     
-    Population childPopulation = new Population(this.getGenotype());
+    // Score all children as one batch
+    childPopulation.setFitnessScores();
+    return childPopulation;
+  }
+  
+  // Like generateChildren, but the children are not scored. Their fitness scores and the statistics are only valid after setFitnessScores(), which scores them as one batch
+  public Population generateUnscoredChildren(CrossoverOperator crossover) {
+    
+    Population childPopulation = new Population(this.getGenotype(), this.evaluator);
+    childPopulation.setRandom(this.random);
+    Random random = getRandom();
     
     for (int i=0; i<this.size(); i+=2) {
+      // The operator writes both children in one call
       Chromosome child = new Chromosome(this.chromosomeNumberOfGenes());
-      if (crossoverMethod == "singlePointCrossover")
-        child.singlePointCrossover(this.get(i), this.get(i+1));
-      else if (crossoverMethod == "twoPointCrossover")
-        child.twoPointCrossover(this.get(i), this.get(i+1));
-      else if (crossoverMethod == "threePointCrossover")
-        child.threePointCrossover(this.get(i), this.get(i+1));
-      else if (crossoverMethod == "randomCrossover")
-        child.randomCrossover(this.get(i), this.get(i+1));
-      else
-        throw new IllegalArgumentException("Valid crossoverMethods are: singlePointCrossover, threePointCrossover, randomCrossover");
-      
-      childPopulation.add(child);
-      
       Chromosome child2 = new Chromosome(this.chromosomeNumberOfGenes());
-      if (crossoverMethod == "singlePointCrossover")
-        child2.singlePointCrossover(this.get(i+1), this.get(i));
-      else if (crossoverMethod == "twoPointCrossover")
-        child.twoPointCrossover(this.get(i), this.get(i+1));
-      else if (crossoverMethod == "threePointCrossover")
-        child2.threePointCrossover(this.get(i+1), this.get(i));
-      else if (crossoverMethod == "randomCrossover")
-        child2.randomCrossover(this.get(i+1), this.get(i));
-      else
-        throw new IllegalArgumentException("Valid crossoverMethods are: singlePointCrossover, threePointCrossover, randomCrossover");
+      crossover.crossover(this.get(i), this.get(i+1), child, child2, random);
       
-      childPopulation.add(child2);
+      childPopulation.addUnscored(child);
+      childPopulation.addUnscored(child2);
     }
+    
     return childPopulation;
   }
   
   public void generateRandom(int count) {
+    Random random = getRandom();
     for (int i=0; i<count; i++) {
       Chromosome chromosome = new Chromosome(this.chromosomeNumberOfGenes());
-      chromosome.setRandomGenes();
-      this.add(chromosome);
+      chromosome.setRandomGenes(random);
+      this.addUnscored(chromosome);
     }
+    
+    // Score the whole population as one batch
+    this.setFitnessScores();
   }
   
+  // Mutates every Chromosome and updates the fitness scores, so that selection never compares stale scores. Each score is updated from only the flipped genes (see Chromosome.mutate(mutationRate, genotype)), so at low mutation rates this is much cheaper than rescoring every gene
   public void mutate(double mutationRate) {
+    Random random = getRandom();
     for (Chromosome chromosome : this.population) {
-      chromosome.mutate(mutationRate);
+      chromosome.mutate(mutationRate, genotype, random);
     }
+    
+    calculateStatistics();
   }
   
   public void mutate() {
@@ -180,22 +267,115 @@ public class Population {
     return this.getSumScores()/this.size();
   }
   
+  // O(1), the best Chromosome is tracked as Chromosomes are added and removed
   public int getBestScore() {
     return getBest().getFitnessScore();
   }
   
+  // O(1), the best Chromosome is tracked as Chromosomes are added and removed. Unlike sortDescending() it does not reorder the population
   public Chromosome getBest() {
-    Population temp = this;
-    temp.sortDescending();
-    return temp.get(0);
+    return population.get(bestIndex);
   }
   
-  public String listScores() {
-    String listScores = new String();
-    for (int i=0; i<this.size(); i++)
-      listScores += this.get(i).getFitnessScore() + ",";
+  public int getBestIndex() {
+    return bestIndex;
+  }
+  
+  public Chromosome getWorst() {
+    return population.get(worstIndex);
+  }
+  
+  public int getWorstIndex() {
+    return worstIndex;
+  }
+  
+  // Returns a new population with the count best Chromosomes, best first, without reordering this population
+  public Population getTop(int count) {
+    Population top = new Population(this.getGenotype(), this.evaluator);
+    top.setRandom(this.random);
+    for (int index : topIndexes(count))
+      top.addScored(this.get(index));
+    return top;
+  }
+  
+  public int[] topIndexes(int count) {
+    return topIndexes(count, new int[Math.min(count, this.size())]);
+  }
+  
+  // Fills heap with the indexes of the count best Chromosomes, best first, and returns it. Ties are ordered by index, lower first
+  // heap must have room for min(count, size()) indexes. Passing the same array every generation avoids allocation
+  public int[] topIndexes(int count, int[] heap) {
+    return topIndexes(index -> population.get(index).fitnessScore, this.size(), count, heap);
+  }
+  
+  // Fills heap with the indexes of the count best of size scores, best first. A bounded min-heap of count indexes is kept while scanning the scores, which takes O(n log count), and is then heap sorted
+  // Shared by Population and PackedPopulation, which look up scores differently
+  static int[] topIndexes(IntUnaryOperator fitnessScore, int size, int count, int[] heap) {
+    count = Math.min(count, size);
+    int heapSize = 0;
     
-    // Remove trailing "," and return
-    return listScores.replaceAll(",$", "");
+    for (int i=0; i<size; i++) {
+      if (heapSize<count) {
+        // Fill the heap, moving the new index up while it is worse than its parent
+        int child = heapSize++;
+        heap[child] = i;
+        while (child>0 && isWorse(fitnessScore, heap[child], heap[(child - 1) / 2])) {
+          swap(heap, child, (child - 1) / 2);
+          child = (child - 1) / 2;
+        }
+      } else if (isWorse(fitnessScore, heap[0], i)) {
+        // Chromosome i beats the worst of the current top count, it takes its place
+        heap[0] = i;
+        siftDown(fitnessScore, heap, 0, heapSize);
+      }
+    }
+    
+    // Heap sort: repeatedly move the worst remaining index to the end, leaving the best first
+    for (int end=heapSize - 1; end>0; end--) {
+      swap(heap, 0, end);
+      siftDown(fitnessScore, heap, 0, end);
+    }
+    return heap;
+  }
+  
+  // Whether the Chromosome at index a ranks below the one at index b
+  static boolean isWorse(IntUnaryOperator fitnessScore, int a, int b) {
+    int scoreA = fitnessScore.applyAsInt(a);
+    int scoreB = fitnessScore.applyAsInt(b);
+    return scoreA<scoreB || (scoreA == scoreB && a>b);
+  }
+  
+  // Moves heap[parent] down the min-heap heap[0..heapSize) until neither child is worse than it
+  static void siftDown(IntUnaryOperator fitnessScore, int[] heap, int parent, int heapSize) {
+    while (true) {
+      int worst = parent;
+      int left = 2*parent + 1;
+      int right = left + 1;
+      if (left<heapSize && isWorse(fitnessScore, heap[left], heap[worst]))
+        worst = left;
+      if (right<heapSize && isWorse(fitnessScore, heap[right], heap[worst]))
+        worst = right;
+      if (worst == parent)
+        return;
+      swap(heap, parent, worst);
+      parent = worst;
+    }
+  }
+  
+  static void swap(int[] array, int i, int j) {
+    int temp = array[i];
+    array[i] = array[j];
+    array[j] = temp;
+  }
+  
+  // The fitness scores as a comma separated list, built in one pass without a trailing ","
+  public String listScores() {
+    StringBuilder listScores = new StringBuilder(8 * this.size());
+    for (int i=0; i<this.size(); i++) {
+      if (i>0)
+        listScores.append(',');
+      listScores.append(this.get(i).getFitnessScore());
+    }
+    return listScores.toString();
   }
 }
\ No newline at end of file
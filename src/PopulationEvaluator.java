@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Calculates the fitness scores of all Chromosomes of a Population as one batch, split across the threads of a ForkJoinPool.
+ * Each Chromosome's fitnessScore only depends on its own genes, so the scores are the same no matter how many threads run. The Population's minScore and sumScores are merged afterwards on the calling thread in index order, so they are also the same as when the Chromosomes are scored one at a time.
+ *
+ * @author willj
+ */
+public class PopulationEvaluator {
+  // The default number of Chromosomes a single task scores before it stops splitting its range in half
+  public static final int DEFAULT_BATCH_SIZE = 64;
+
+  // The pool whose threads calculate the fitness scores
+  ForkJoinPool pool;
+
+  // The largest range of Chromosomes a task will score without splitting it. Smaller values spread cheap fitness functions poorly, larger values leave threads idle for expensive ones
+  int batchSize;
+
+  /**
+   * Constructor for when the pool and batch size are provided
+   * @param pool
+   *   (ForkJoinPool) the pool whose threads will calculate the fitness scores
+   * @param batchSize
+   *   (int) the largest number of Chromosomes a single task will score. Must be at least 1
+   */
+  public PopulationEvaluator(ForkJoinPool pool, int batchSize) {
+    if (batchSize<1)
+      throw new IllegalArgumentException("batchSize must be at least 1.");
+
+    this.pool = pool;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Constructor for when only the pool is provided. Uses DEFAULT_BATCH_SIZE
+   * @param pool
+   *   (ForkJoinPool) the pool whose threads will calculate the fitness scores
+   */
+  public PopulationEvaluator(ForkJoinPool pool) {
+    this(pool, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Constructor for when no pool is provided. Uses the common ForkJoinPool, which has one thread per available core, and DEFAULT_BATCH_SIZE
+   */
+  public PopulationEvaluator() {
+    this(ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Calculates and sets the fitnessScore of every Chromosome in the Population, then recalculates the Population's minScore, sumScores, best and worst
+   * @param population
+   *   (Population) the Population to score
+   */
+  public void evaluate(Population population) {
+    // Small populations are scored on the calling thread, handing them to the pool would cost more than it saves
+    if (population.size() <= batchSize)
+      new EvaluateTask(population.population, population.getGenotype(), 0, population.size()).compute();
+    else
+      pool.invoke(new EvaluateTask(population.population, population.getGenotype(), 0, population.size()));
+
+    // Merge the aggregates in index order
+    population.calculateStatistics();
+  }
+
+  /**
+   * Getter for the pool
+   * @return
+   *   (ForkJoinPool) the pool whose threads calculate the fitness scores
+   */
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+
+  /**
+   * Getter for batchSize
+   * @return
+   *   (int) the largest number of Chromosomes a single task will score
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Scores the Chromosomes in the range [from, to) of a list, splitting the range in half until it is no larger than batchSize
+   */
+  class EvaluateTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final ArrayList<Chromosome> chromosomes;
+    final Genotype genotype;
+    final int from;
+    final int to;
+
+    EvaluateTask(ArrayList<Chromosome> chromosomes, Genotype genotype, int from, int to) {
+      this.chromosomes = chromosomes;
+      this.genotype = genotype;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > batchSize) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new EvaluateTask(chromosomes, genotype, from, mid), new EvaluateTask(chromosomes, genotype, mid, to));
+        return;
+      }
+
+      genotype.calculateFitness(chromosomes, from, to);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A seedable, splittable source of random numbers using the xoshiro256** generator. It extends Random so that it can be passed to every method that takes a Random, but it does not share a seed between threads like Math.random() or synchronize like Random.
+ * A run is made reproducible by creating one RandomStream from a seed and giving each thread (or Island) its own stream with split(). Split streams never overlap, since split() jumps this stream 2^128 numbers ahead.
+ * A RandomStream is not thread-safe, each thread must use its own.
+ *
+ * @author willj
+ */
+public class RandomStream extends Random {
+  private static final long serialVersionUID = 1L;
+
+  // The 256 bits of generator state. They are never all 0
+  long s0;
+  long s1;
+  long s2;
+  long s3;
+
+  /**
+   * Constructor for when a seed is provided. Two RandomStreams created with the same seed produce the same numbers
+   * @param seed
+   *   (long) the seed
+   */
+  public RandomStream(long seed) {
+    // Random's constructor calls setSeed, which fills the state
+    super(seed);
+  }
+
+  /**
+   * Constructor for when no seed is provided. The seed is chosen at random, so the numbers differ between runs
+   */
+  public RandomStream() {
+    this(ThreadLocalRandom.current().nextLong());
+  }
+
+  /**
+   * Constructor for a RandomStream continuing from a state returned by getState()
+   * @param state
+   *   (long[]) the 4 words of state
+   */
+  public RandomStream(long[] state) {
+    this(0);
+    setState(state);
+  }
+
+  /**
+   * Resets the state from a seed. The seed is expanded to 256 bits with splitmix64, so similar seeds still give unrelated streams
+   * @param seed
+   *   (long) the seed
+   */
+  @Override
+  public void setSeed(long seed) {
+    s0 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+    s1 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+    s2 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+    s3 = splitMix64(seed + 0x9E3779B97F4A7C15L);
+  }
+
+  // The output function of splitmix64, which scrambles the bits of a counter
+  private static long splitMix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Returns the next 64 random bits and advances the state
+   * @return
+   *   (long) a uniformly distributed long
+   */
+  @Override
+  public long nextLong() {
+    long result = Long.rotateLeft(s1 * 5, 7) * 9;
+    long t = s1 << 17;
+    s2 ^= s0;
+    s3 ^= s1;
+    s1 ^= s2;
+    s0 ^= s3;
+    s2 ^= t;
+    s3 = Long.rotateLeft(s3, 45);
+    return result;
+  }
+
+  /**
+   * Returns the next bits random bits. Every other method of Random is built on this one, so they all draw from the xoshiro256** state
+   * @param bits
+   *   (int) the number of random bits, 1 to 32
+   * @return
+   *   (int) the random bits in the low bits of an int
+   */
+  @Override
+  protected int next(int bits) {
+    // The high bits of xoshiro256** are the best
+    return (int) (nextLong() >>> (64 - bits));
+  }
+
+  /**
+   * Returns a uniformly distributed double in [0, 1)
+   * @return
+   *   (double) a random double from 53 random bits
+   */
+  @Override
+  public double nextDouble() {
+    return (nextLong() >>> 11) * 0x1.0p-53;
+  }
+
+  /**
+   * Returns a uniformly distributed int in [0, bound). Uses one multiplication instead of a division in the common case
+   * @param bound
+   *   (int) the exclusive upper bound. Must be positive
+   * @return
+   *   (int) a random int in [0, bound)
+   */
+  @Override
+  public int nextInt(int bound) {
+    if (bound <= 0)
+      throw new IllegalArgumentException("bound must be positive.");
+
+    // Lemire's method: the high 32 bits of a random 32 bit number times bound are uniform in [0, bound) once the few biased low products are rejected
+    long product = (nextLong() >>> 32) * bound;
+    if ((int) product + Integer.MIN_VALUE < bound + Integer.MIN_VALUE) {
+      long threshold = (0x100000000L - bound) % bound;
+      while ((product & 0xFFFFFFFFL) < threshold)
+        product = (nextLong() >>> 32) * bound;
+    }
+    return (int) (product >>> 32);
+  }
+
+  /**
+   * Returns a new RandomStream for another thread. The new stream continues with the numbers this stream would have produced next, and this stream jumps 2^128 numbers ahead, so the two never overlap. Splitting the same seeded stream in the same order always gives the same streams
+   * @return
+   *   (RandomStream) the new stream
+   */
+  public RandomStream split() {
+    RandomStream stream = new RandomStream(getState());
+    jump();
+    return stream;
+  }
+
+  // Advances the state by 2^128 numbers, using the jump polynomial published with xoshiro256**
+  private void jump() {
+    final long[] jump = { 0x180EC6D33CFD0ABAL, 0xD5A61266F0C9392CL, 0xA9582618E03FC9AAL, 0x39ABDC4529B1661CL };
+
+    long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+    for (long word : jump) {
+      for (int b=0; b<64; b++) {
+        if ((word & (1L << b)) != 0) {
+          t0 ^= s0;
+          t1 ^= s1;
+          t2 ^= s2;
+          t3 ^= s3;
+        }
+        nextLong();
+      }
+    }
+    s0 = t0;
+    s1 = t1;
+    s2 = t2;
+    s3 = t3;
+  }
+
+  /**
+   * Returns a copy of the state, for example to save it with a checkpoint
+   * @return
+   *   (long[]) the 4 words of state
+   */
+  public long[] getState() {
+    return new long[] { s0, s1, s2, s3 };
+  }
+
+  /**
+   * Restores a state returned by getState(). The stream then continues exactly where the saved stream was
+   * @param state
+   *   (long[]) the 4 words of state. Must not all be 0
+   */
+  public void setState(long[] state) {
+    if (state.length != 4 || (state[0] | state[1] | state[2] | state[3]) == 0)
+      throw new IllegalArgumentException("state must be 4 words that are not all 0.");
+
+    s0 = state[0];
+    s1 = state[1];
+    s2 = state[2];
+    s3 = state[3];
+  }
+}
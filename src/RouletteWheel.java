@@ -0,0 +1,161 @@
+import java.util.Random;
+
+/**
+ * A roulette wheel (fitness proportionate selection) built with Vose's alias method. Building the wheel takes O(n) once per Population, after which each pick takes O(1) no matter how large the Population is.
+ * The wheel is divided into n columns of equal width, one per Chromosome. Column i is split between Chromosome i (a share probability[i]) and one other Chromosome alias[i] (the rest). A pick chooses a column uniformly and then one of its two Chromosomes with a single random double.
+ * Negative fitness scores are supported: if the lowest score is negative all scores are shifted up by it, so the worst Chromosome gets a weight of 0 and the weights of the others keep their differences. If all weights are 0 every Chromosome is equally likely.
+ * The arrays are reused when the wheel is rebuilt for a Population that is not larger than the previous one, so a Selector can keep one wheel for a whole run.
+ *
+ * @author willj
+ */
+public class RouletteWheel {
+  // probability[i] is the chance that a pick landing in column i chooses Chromosome i rather than alias[i]
+  double[] probability;
+  int[] alias;
+
+  // Work list used while building. Columns below 1 are kept at the front and columns at or above 1 at the back
+  int[] worklist;
+
+  // The number of Chromosomes on the wheel
+  int size;
+
+  /**
+   * Constructor for an empty wheel. build must be called before pick
+   */
+  public RouletteWheel() {
+    probability = new double[0];
+    alias = new int[0];
+    worklist = new int[0];
+    size = 0;
+  }
+
+  /**
+   * Builds the wheel from the fitnessScores of a Population
+   * @param population
+   *   (Population) the Population whose Chromosomes will be on the wheel, in index order
+   */
+  public void build(Population population) {
+    int count = population.size();
+    ensureCapacity(count);
+
+    // Store the scores in probability, which is overwritten with the scaled weights by build
+    for (int i=0; i<count; i++)
+      probability[i] = population.get(i).getFitnessScore();
+
+    buildFromProbability(count);
+  }
+
+  /**
+   * Builds the wheel from a column of fitness scores
+   * @param scores
+   *   (int[]) the fitness scores, one per Chromosome
+   * @param count
+   *   (int) the number of scores to use, starting at index 0
+   */
+  public void build(int[] scores, int count) {
+    ensureCapacity(count);
+
+    for (int i=0; i<count; i++)
+      probability[i] = scores[i];
+
+    buildFromProbability(count);
+  }
+
+  // Grows the arrays if they cannot hold count Chromosomes
+  void ensureCapacity(int count) {
+    if (count<1)
+      throw new IllegalArgumentException("The roulette wheel needs at least 1 Chromosome.");
+
+    if (probability.length<count) {
+      probability = new double[count];
+      alias = new int[count];
+      worklist = new int[count];
+    }
+    size = count;
+  }
+
+  // Builds the alias table from the raw scores stored in probability[0..count)
+  void buildFromProbability(int count) {
+    // Find the lowest score so that negative scores can be shifted up
+    double min = probability[0];
+    for (int i=1; i<count; i++)
+      min = Math.min(min, probability[i]);
+    double shift = (min<0) ? -min : 0;
+
+    double total = 0;
+    for (int i=0; i<count; i++) {
+      probability[i] += shift;
+      total += probability[i];
+    }
+
+    // If every weight is 0 every Chromosome is equally likely
+    if (total<=0) {
+      for (int i=0; i<count; i++) {
+        probability[i] = 1;
+        alias[i] = i;
+      }
+      return;
+    }
+
+    // Scale the weights so that their average is 1, and sort the columns into those below 1 (small) and those at or above 1 (large)
+    int small = 0;
+    int large = count;
+    for (int i=0; i<count; i++) {
+      probability[i] = probability[i] * count / total;
+      if (probability[i]<1)
+        worklist[small++] = i;
+      else
+        worklist[--large] = i;
+    }
+
+    // Fill up each small column with a share of a large column. The large column loses that share and becomes small if it drops below 1
+    // Both parts of the worklist are read from their front. A large column that becomes small is appended to the small part, which never passes the large part since both advance together
+    int smallRead = 0;
+    int largeRead = large;
+    while (smallRead<small && largeRead<count) {
+      int less = worklist[smallRead++];
+      int more = worklist[largeRead];
+
+      alias[less] = more;
+      probability[more] = (probability[more] + probability[less]) - 1;
+
+      if (probability[more]<1) {
+        largeRead++;
+        worklist[small++] = more;
+      }
+    }
+
+    // Whatever is left is 1 apart from rounding errors
+    while (largeRead<count) {
+      int more = worklist[largeRead++];
+      probability[more] = 1;
+      alias[more] = more;
+    }
+    while (smallRead<small) {
+      int less = worklist[smallRead++];
+      probability[less] = 1;
+      alias[less] = less;
+    }
+  }
+
+  /**
+   * Spins the wheel
+   * @param random
+   *   (Random) the source of randomness
+   * @return
+   *   (int) the index of the chosen Chromosome
+   */
+  public int pick(Random random) {
+    int column = random.nextInt(size);
+    return (random.nextDouble()<probability[column]) ? column : alias[column];
+  }
+
+  /**
+   * Getter for the number of Chromosomes on the wheel
+   * @return
+   *   (int) the number of Chromosomes on the wheel
+   */
+  public int size() {
+    return size;
+  }
+}
@@ -1,66 +1,189 @@
-import java.util.Iterator;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
 
 public class Selector {
   
   
+  // Reused by rolluletteWheelSelection so that its arrays are only allocated when the population grows. A Selector should therefore only be used by one thread at a time
+  RouletteWheel rouletteWheel = new RouletteWheel();
+  
+  // The source of randomness for roulette picks and tournament draws. If null the calling thread's ThreadLocalRandom is used. Set a seeded RandomStream to make runs reproducible
+  Random random;
+  
+  // The Selector's source of randomness, or the calling thread's ThreadLocalRandom if none was set
+  public Random getRandom() {
+    return random != null ? random : ThreadLocalRandom.current();
+  }
+  
+  public void setRandom(Random random) {
+    this.random = random;
+  }
+  
+  // Builds a Vose alias table from the fitness scores once, then each of the count picks takes O(1). Negative fitness scores are shifted up by the lowest score, see RouletteWheel
   public Population rolluletteWheelSelection(Population population, int count) {
-    Population selectedPopulation = new Population(population.getGenotype());
+    Population selectedPopulation = new Population(population.getGenotype(), population.getEvaluator());
+    selectedPopulation.setRandom(population.random);
     
-    Random random = new Random();
+    Random random = getRandom();
     
-    // Random value from min score to total sum of scores in population
-    int rouletteValue = random.nextInt((population.getSumScores() - population.getMinScore()) + 1) + population.getMinScore();
+    rouletteWheel.build(population);
     
-    int countSelected = 0;
-    int rouletteFitnessSum = 0;
+    for (int countSelected=0; countSelected<count; countSelected++)
+      selectedPopulation.addScored(population.get(rouletteWheel.pick(random)));
     
-    Iterator<Chromosome> iterator = population.iterator();
+    return selectedPopulation;
+  }
+  
+  // The number of Chromosomes competing in each tournament of tournamentSelection(population, count)
+  int kWays = 3;
+  
+  // Whether a Chromosome can be drawn more than once for the same tournament in tournamentSelection(population, count)
+  boolean withReplacement = true;
+  
+  // The indexes drawn for the current tournament when sampling without replacement. Reused so that tournaments do not allocate
+  int[] tournamentIndexes = new int[0];
+  
+  // Each tournament draws kWays random indexes and keeps the index with the highest fitness score. Nothing is allocated per tournament and the winners are added with their existing scores
+  public Population tournamentSelection(Population population, int kWays, int count, boolean withReplacement) {
+    if (kWays<1)
+      throw new IllegalArgumentException("kWays should be at least 1.");
+    if (!withReplacement && kWays>population.size())
+      throw new IllegalArgumentException("kWays should not be larger than population size when sampling without replacement.");
     
-    while (countSelected<count) {
-      Chromosome temp = iterator.next();
-      rouletteFitnessSum += temp.fitnessScore;
-      
-      if (rouletteFitnessSum>=rouletteValue) {
-        selectedPopulation.add(temp);
-        // Get new random value from min score to total sum of scores in population
-        rouletteValue = random.nextInt((population.getSumScores() - population.getMinScore()) + 1) + population.getMinScore();
-        countSelected++;
-      }
-      
-      // If we reached the end of the list, re-initialize iterator to start back at the first
-      if (!iterator.hasNext())
-        iterator = population.population.iterator();
-    }
+    Population selectedPopulation = new Population(population.getGenotype(), population.getEvaluator());
+    selectedPopulation.setRandom(population.random);
+    
+    Random random = getRandom();
+    
+    if (tournamentIndexes.length<kWays)
+      tournamentIndexes = new int[kWays];
+    
+    IntUnaryOperator fitnessScore = index -> population.get(index).fitnessScore;
+    for (int countSelected=0; countSelected<count; countSelected++)
+      selectedPopulation.addScored(population.get(tournamentWinner(fitnessScore, population.size(), kWays, withReplacement, random)));
     
     return selectedPopulation;
   }
   
   public Population tournamentSelection(Population population, int kWays, int count) {
-    Population selectedPopulation = new Population(population.getGenotype());
+    return tournamentSelection(population, kWays, count, true);
+  }
+  
+  public Population tournamentSelection(Population population, int count) {
+    return tournamentSelection(population, this.kWays, count, this.withReplacement);
+  }
+  
+  // Runs one tournament among size scores and returns the index of its winner
+  int tournamentWinner(IntUnaryOperator fitnessScore, int size, int kWays, boolean withReplacement, Random random) {
+    return tournament(fitnessScore, size, kWays, withReplacement, true, random);
+  }
+  
+  // Runs one tournament among the Chromosomes of population and returns the index of its loser, the drawn Chromosome with the lowest fitness score. Used by SteadyStateEngine to choose the Chromosome a child replaces
+  public int tournamentLoser(PackedPopulation population, int kWays, boolean withReplacement) {
+    if (kWays<1)
+      throw new IllegalArgumentException("kWays should be at least 1.");
+    if (!withReplacement && kWays>population.size())
+      throw new IllegalArgumentException("kWays should not be larger than population size when sampling without replacement.");
     
-    int countSelected = 0;
-    Random random = new Random();
-    int randomIndex = 0;
+    if (tournamentIndexes.length<kWays)
+      tournamentIndexes = new int[kWays];
+    
+    return tournament(population.fitnessScoreOf, population.size(), kWays, withReplacement, false, getRandom());
+  }
+  
+  public int tournamentLoser(PackedPopulation population) {
+    return tournamentLoser(population, this.kWays, this.withReplacement);
+  }
+  
+  // Runs one tournament among size scores and returns the index with the highest score if highest is set, otherwise the index with the lowest score
+  int tournament(IntUnaryOperator fitnessScore, int size, int kWays, boolean withReplacement, boolean highest, Random random) {
+    int winner = -1;
+    int winnerScore = 0;
     
-    while (countSelected<count) {
-      Population kWaysPopulation = new Population(population.getGenotype());
+    for (int i=0; i<kWays; i++) {
+      int index;
+      if (withReplacement) {
+        index = random.nextInt(size);
+      } else {
+        // Floyd's sampling: draw from [0, size-kWays+i], and if that index was already drawn take size-kWays+i instead, which cannot have been drawn yet. Every set of kWays distinct indexes is equally likely and no draw is ever repeated
+        int bound = size - kWays + i;
+        index = random.nextInt(bound + 1);
+        for (int j=0; j<i; j++)
+          if (tournamentIndexes[j] == index) {
+            index = bound;
+            break;
+          }
+        tournamentIndexes[i] = index;
+      }
       
-      for (int i=0; i<kWays; i++) {
-        // Get random index 
-        randomIndex = random.nextInt((population.size() - 1 - 0) + 1) + 0;
-        kWaysPopulation.add(population.get(randomIndex));
+      int score = fitnessScore.applyAsInt(index);
+      if (winner<0 || (highest ? score>winnerScore : score<winnerScore)) {
+        winner = index;
+        winnerScore = score;
       }
-      kWaysPopulation.sortDescending();
-      selectedPopulation.add(kWaysPopulation.get(0));
-      countSelected++;
     }
-    return selectedPopulation;
+    return winner;
   }
   
-  public Population tournamentSelection(Population population, int count) {
-    int kWays = 3;
-    return tournamentSelection(population, kWays, count);
+  // Fills selected with count indexes of population chosen with the roulette wheel, and returns it. Nothing is allocated once the wheel and selected are large enough
+  public int[] rolluletteWheelSelection(PackedPopulation population, int count, int[] selected) {
+    Random random = getRandom();
+    
+    rouletteWheel.build(population.fitnessScores, population.size());
+    
+    for (int countSelected=0; countSelected<count; countSelected++)
+      selected[countSelected] = rouletteWheel.pick(random);
+    
+    return selected;
+  }
+  
+  // Fills selected with the indexes of count tournament winners of population, and returns it. Nothing is allocated once tournamentIndexes and selected are large enough
+  public int[] tournamentSelection(PackedPopulation population, int kWays, int count, boolean withReplacement, int[] selected) {
+    if (kWays<1)
+      throw new IllegalArgumentException("kWays should be at least 1.");
+    if (!withReplacement && kWays>population.size())
+      throw new IllegalArgumentException("kWays should not be larger than population size when sampling without replacement.");
+    
+    Random random = getRandom();
+    
+    if (tournamentIndexes.length<kWays)
+      tournamentIndexes = new int[kWays];
+    
+    for (int countSelected=0; countSelected<count; countSelected++)
+      selected[countSelected] = tournamentWinner(population.fitnessScoreOf, population.size(), kWays, withReplacement, random);
+    
+    return selected;
+  }
+  
+  public int[] tournamentSelection(PackedPopulation population, int count, int[] selected) {
+    return tournamentSelection(population, this.kWays, count, this.withReplacement, selected);
+  }
+  
+  // Fills selected with the indexes of the count best Chromosomes of population, best first, and returns it
+  public int[] rankSelection(PackedPopulation population, int count, int[] selected) {
+    if (count>population.size())
+      throw new IllegalArgumentException("count should be smaller than population size.");
+    
+    return population.topIndexes(count, selected);
+  }
+  
+  public int getKWays() {
+    return kWays;
+  }
+  
+  public void setKWays(int kWays) {
+    if (kWays<1)
+      throw new IllegalArgumentException("kWays should be at least 1.");
+    this.kWays = kWays;
+  }
+  
+  public boolean isWithReplacement() {
+    return withReplacement;
+  }
+  
+  public void setWithReplacement(boolean withReplacement) {
+    this.withReplacement = withReplacement;
   }
   
   public Population rankSelection(Population population, int count) {
@@ -69,14 +192,7 @@ public class Selector {
     if (count>population.size())
       throw new IllegalArgumentException("count should be smaller than population size.");
     
-    Population selectedPopulation = new Population(population.getGenotype());
-    
-    Population temp = population;
-    temp.sortDescending();
-    
-    for (int i=0; i<count; i++)
-      selectedPopulation.add(temp.get(i));
-    
-    return selectedPopulation;
+    // The count best, found with a bounded heap in O(n log count) without reordering the population
+    return population.getTop(count);
   }
 }
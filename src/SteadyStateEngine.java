@@ -0,0 +1,250 @@
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A steady-state Genetic Algorithm: instead of building a whole new generation like GeneticAlgorithm.algorithm1 (and GenerationArena), each step breeds two children and lets each of them replace one Chromosome of a single population, in place.
+ * Each step picks two parents by tournament, crosses them over (with chance crossoverRate, otherwise the children are copies of the parents) and mutates the children. A child that equals one of its parents is discarded. Each other child then replaces either the worst Chromosome (REPLACE_WORST) or the loser of a tournament (REPLACE_TOURNAMENT_LOSER), but only if it is at least as good, so the best score never drops and no elitism step is needed.
+ * A step scores only its two children, and copies of parents are scored from their flipped genes alone, so good solutions are usually found with far fewer fitness evaluations than a generational run. The population, the two child slots and the parent indexes are allocated once when the engine is created, so steps allocate nothing.
+ * The statistics of the population are kept up to date incrementally: sumScores and the best are updated by PackedPopulation.replace, and the worst is the top of an indexed min-heap of the Chromosomes by fitness score, which a replacement updates in O(log populationSize) instead of a pass over all scores.
+ *
+ * @author willj
+ */
+public class SteadyStateEngine implements Evolver {
+  // Replacement strategies: a child replaces the worst Chromosome, or the loser of a tournament of the Selector's kWays Chromosomes
+  public static final String REPLACE_WORST = "worst";
+  public static final String REPLACE_TOURNAMENT_LOSER = "tournamentLoser";
+
+  // The population, whose Chromosomes are replaced in place
+  PackedPopulation population;
+
+  // The two children of the current step. Kept apart from the population so that a child never overwrites a parent before the other child is written
+  PackedPopulation offspring;
+
+  // The Selector used for parents and, with REPLACE_TOURNAMENT_LOSER, for the Chromosomes the children replace
+  Selector selector;
+
+  // The crossover operator of the children
+  CrossoverOperator crossover;
+
+  // The parameters of each step
+  double crossoverRate;
+  double mutationRate;
+  boolean replaceWorst;
+
+  // The indexes of the parents of the current step
+  int[] parents = new int[2];
+
+  // An indexed min-heap of the population's indexes ordered by fitness score, so heap[0] is the worst. heapPositions[index] is the position of index in heap
+  int[] heap;
+  int[] heapPositions;
+
+  // The number of steps taken and of children that replaced a Chromosome
+  long steps;
+  long replacements;
+
+  // The source of randomness of the selections, crossovers and mutations. If null the calling thread's ThreadLocalRandom is used
+  Random random;
+
+  /**
+   * Constructor. Allocates the population and fills it with random Chromosomes
+   * @param genotype
+   *   (Genotype) the Genotype whose Items the Chromosomes select from
+   * @param selector
+   *   (Selector) the Selector used for parents and tournament losers. Its source of randomness is set to random
+   * @param crossover
+   *   (CrossoverOperator) the crossover operator of the children
+   * @param populationSize
+   *   (int) the number of Chromosomes. At least 2
+   * @param crossoverRate
+   *   (double) the chance that a pair of parents is crossed over rather than copied
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param replacement
+   *   (String) REPLACE_WORST or REPLACE_TOURNAMENT_LOSER
+   * @param random
+   *   (Random) the source of randomness, or null to use the calling thread's ThreadLocalRandom
+   */
+  public SteadyStateEngine(Genotype genotype, Selector selector, CrossoverOperator crossover, int populationSize, double crossoverRate, double mutationRate, String replacement, Random random) {
+    if (populationSize<2)
+      throw new IllegalArgumentException("populationSize must be at least 2.");
+    if (REPLACE_WORST.equals(replacement))
+      replaceWorst = true;
+    else if (!REPLACE_TOURNAMENT_LOSER.equals(replacement))
+      throw new IllegalArgumentException("replacement must be one of: " + REPLACE_WORST + ", " + REPLACE_TOURNAMENT_LOSER);
+
+    this.selector = selector;
+    this.crossover = crossover;
+    this.crossoverRate = crossoverRate;
+    this.mutationRate = mutationRate;
+    this.random = random;
+    selector.setRandom(random);
+
+    population = new PackedPopulation(genotype, populationSize);
+    offspring = new PackedPopulation(genotype, 2);
+
+    // Generate the source population (completely random genes)
+    population.generateRandom(populationSize, random());
+
+    heap = new int[populationSize];
+    heapPositions = new int[populationSize];
+    for (int i=0; i<populationSize; i++)
+      heap[i] = i;
+    // Heapify bottom up in O(populationSize)
+    for (int i=populationSize/2 - 1; i>=0; i--)
+      siftDown(i);
+    for (int i=0; i<populationSize; i++)
+      heapPositions[heap[i]] = i;
+  }
+
+  /**
+   * Constructor for when the crossover method is given by name
+   * @param genotype
+   *   (Genotype) the Genotype whose Items the Chromosomes select from
+   * @param crossoverMethod
+   *   (String) the crossover method of the children, see CrossoverOperators
+   * @param populationSize
+   *   (int) the number of Chromosomes. At least 2
+   * @param crossoverRate
+   *   (double) the chance that a pair of parents is crossed over rather than copied
+   * @param mutationRate
+   *   (double) the chance with which a gene's value will flip
+   * @param replacement
+   *   (String) REPLACE_WORST or REPLACE_TOURNAMENT_LOSER
+   * @param random
+   *   (Random) the source of randomness, or null to use the calling thread's ThreadLocalRandom
+   */
+  public SteadyStateEngine(Genotype genotype, String crossoverMethod, int populationSize, double crossoverRate, double mutationRate, String replacement, Random random) {
+    this(genotype, new Selector(), CrossoverOperators.get(crossoverMethod), populationSize, crossoverRate, mutationRate, replacement, random);
+  }
+
+  // The engine's source of randomness, or the calling thread's ThreadLocalRandom if none was set
+  Random random() {
+    return random != null ? random : ThreadLocalRandom.current();
+  }
+
+  /**
+   * Breeds two children and lets each replace a Chromosome of the population if it is at least as good
+   */
+  public void step() {
+    Random random = random();
+
+    selector.tournamentSelection(population, 2, parents);
+
+    // The children are written into the offspring slots, by crossover (scored in full) or as copies of the parents (which keep their scores)
+    offspring.clear();
+    if (random.nextDouble()<crossoverRate) {
+      offspring.crossover(crossover, population, parents[0], parents[1], offspring.allocate(), offspring.allocate(), random);
+      offspring.evaluate(0, 2);
+    } else {
+      offspring.addCopy(population, parents[0]);
+      offspring.addCopy(population, parents[1]);
+    }
+
+    for (int child=0; child<2; child++) {
+      // Mutation updates the score from only the flipped genes
+      offspring.mutate(child, mutationRate, random);
+
+      // A child equal to a parent would only add a copy, and copies of the best quickly take over a steady-state population, so it is discarded
+      if (offspring.sameGenes(child, population, parents[0]) || offspring.sameGenes(child, population, parents[1]))
+        continue;
+
+      int victim = replaceWorst ? heap[0] : selector.tournamentLoser(population);
+      if (offspring.getFitnessScore(child)>=population.getFitnessScore(victim)) {
+        population.replace(victim, offspring, child);
+        // The victim's score did not drop, so it can only move down the heap
+        siftDown(heapPositions[victim]);
+        population.setWorst(heap[0]);
+        replacements++;
+      }
+    }
+    steps++;
+  }
+
+  /**
+   * Takes populationSize/2 steps, which breed as many children as the population has Chromosomes, so that a generation compares with one of GenerationArena
+   */
+  @Override
+  public void nextGeneration() {
+    // Only whole generations are recorded in the metrics: a step is too short to time its phases without slowing it down
+    Metrics metrics = population.genotype.metrics;
+    long start = 0;
+    long startBytes = 0;
+    if (metrics != null) {
+      start = System.nanoTime();
+      startBytes = Metrics.threadAllocatedBytes();
+    }
+
+    for (int i=Math.max(1, population.capacity()/2); i>0; i--)
+      step();
+
+    if (metrics != null)
+      metrics.endGeneration(start, startBytes);
+  }
+
+  /**
+   * Takes steps until the best score reaches bestScoreTarget or maxSteps steps were taken
+   * @param bestScoreTarget
+   *   (int) the best score at which to stop
+   * @param maxSteps
+   *   (long) the largest number of steps
+   * @return
+   *   (long) the number of steps taken by this call
+   */
+  public long run(int bestScoreTarget, long maxSteps) {
+    long taken = 0;
+    while (population.getBestScore()<bestScoreTarget && taken<maxSteps) {
+      step();
+      taken++;
+    }
+    return taken;
+  }
+
+  // Moves the index at heap position i down until neither child has a lower fitness score, keeping heapPositions up to date
+  void siftDown(int i) {
+    int[] fitnessScores = population.fitnessScores;
+    int size = heap.length;
+    int index = heap[i];
+    int score = fitnessScores[index];
+    while (true) {
+      int child = 2*i + 1;
+      if (child>=size)
+        break;
+      if (child + 1<size && fitnessScores[heap[child + 1]]<fitnessScores[heap[child]])
+        child++;
+      if (fitnessScores[heap[child]]>=score)
+        break;
+      heap[i] = heap[child];
+      heapPositions[heap[i]] = i;
+      i = child;
+    }
+    heap[i] = index;
+    heapPositions[index] = i;
+  }
+
+  /**
+   * Getter for the population
+   * @return
+   *   (PackedPopulation) the population, whose Chromosomes are replaced in place by each step
+   */
+  @Override
+  public PackedPopulation getPopulation() {
+    return population;
+  }
+
+  /**
+   * Returns a copy of the best Chromosome
+   * @return
+   *   (Chromosome) a new Chromosome with the genes and the fitness score of the best Chromosome
+   */
+  public Chromosome getBest() {
+    return population.toChromosome(population.getBestIndex());
+  }
+
+  public long getSteps() {
+    return steps;
+  }
+
+  public long getReplacements() {
+    return replacements;
+  }
+}